@@ -0,0 +1,38 @@
+/**
+* Copyright (c) 2012-2014 Microsoft Mobile. All rights reserved.
+* Nokia and Nokia Connecting People are registered trademarks of Nokia Corporation. 
+* Oracle and Java are trademarks or registered trademarks of Oracle and/or its
+* affiliates. Other product and company names mentioned herein may be trademarks
+* or trade names of their respective owners. 
+* See LICENSE.TXT for license information.
+*/
+
+package com.nokia.example.sudokumaster.bench;
+
+import com.nokia.example.sudokumaster.BitmaskSolver;
+import com.nokia.example.sudokumaster.DancingLinksSolver;
+import com.nokia.example.sudokumaster.Solver;
+
+/**
+ * Solver backends by name. A new backend is benchmarked by adding its name
+ * here and to the backend @Param of SolverBenchmark and GeneratorBenchmark.
+ */
+public final class Backends {
+
+    public static final String BITMASK = "bitmask";
+    public static final String DANCING_LINKS = "dancinglinks";
+
+    private Backends() {
+        // Static methods only.
+    }
+
+    public static Solver create(String name) {
+        if (BITMASK.equals(name)) {
+            return new BitmaskSolver();
+        }
+        if (DANCING_LINKS.equals(name)) {
+            return new DancingLinksSolver();
+        }
+        throw new IllegalArgumentException("Unknown solver backend " + name);
+    }
+}
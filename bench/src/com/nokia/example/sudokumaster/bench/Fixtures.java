@@ -0,0 +1,139 @@
+/**
+* Copyright (c) 2012-2014 Microsoft Mobile. All rights reserved.
+* Nokia and Nokia Connecting People are registered trademarks of Nokia Corporation. 
+* Oracle and Java are trademarks or registered trademarks of Oracle and/or its
+* affiliates. Other product and company names mentioned herein may be trademarks
+* or trade names of their respective owners. 
+* See LICENSE.TXT for license information.
+*/
+
+package com.nokia.example.sudokumaster.bench;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.nokia.example.sudokumaster.BitmaskSolver;
+
+/**
+ * Fixed inputs shared by the benchmarks, so that results from different
+ * commits can be compared. The puzzles come from fixtures/puzzles.txt,
+ * 32 of each difficulty from DIFFICULTY_EASY to DIFFICULTY_EXPERT. Each
+ * line holds the puzzle as 81 characters, '.' for empty cells, followed by
+ * the difficulty and the score.
+ */
+public final class Fixtures {
+
+    /** Seed for everything random in the benchmarks. */
+    public static final long SEED = 20140101L;
+    private static final String PUZZLES = "/puzzles.txt";
+
+    private Fixtures() {
+        // Static methods only.
+    }
+
+    /**
+     * Loads the fixture puzzles of one difficulty.
+     * @param difficulty one of the DifficultyRater.DIFFICULTY_ constants,
+     *        or DIFFICULTY_UNKNOWN for all of them
+     * @return new copies of the puzzles, in file order
+     */
+    public static int[][][] puzzles(int difficulty) {
+        final List<int[][]> puzzles = new ArrayList<int[][]>();
+        try (InputStream in = Fixtures.class.getResourceAsStream(PUZZLES)) {
+            if (in == null) {
+                throw new IllegalStateException(PUZZLES + " is missing");
+            }
+            final BufferedReader reader =
+                    new BufferedReader(new InputStreamReader(in, "US-ASCII"));
+            String line;
+            while ((line = reader.readLine()) != null) {
+                final String[] fields = line.trim().split("\\s+");
+                if (fields.length < 2 || fields[0].length() != 81) {
+                    continue;
+                }
+                if (difficulty < 0 || Integer.parseInt(fields[1]) == difficulty) {
+                    puzzles.add(parse(fields[0]));
+                }
+            }
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return puzzles.toArray(new int[puzzles.size()][][]);
+    }
+
+    private static int[][] parse(String cells) {
+        final int[][] puzzle = new int[9][9];
+        for (int cell = 0; cell < 81; cell++) {
+            final char c = cells.charAt(cell);
+            puzzle[cell / 9][cell % 9] = c >= '1' && c <= '9' ? c - '0' : 0;
+        }
+        return puzzle;
+    }
+
+    /**
+     * @param puzzle a puzzle indexed [col][row], as SudokuModel takes it
+     * @return a solved copy of the puzzle
+     */
+    public static int[][] solution(int[][] puzzle) {
+        final int[][] solution = new int[9][9];
+        copy(puzzle, solution);
+        new BitmaskSolver().solve(solution);
+        return solution;
+    }
+
+    /**
+     * @param puzzle a puzzle indexed [col][row]
+     * @return the empty cells of the puzzle as col * 9 + row, by column
+     */
+    public static int[] emptyCells(int[][] puzzle) {
+        int count = 0;
+        for (int col = 0; col < 9; col++) {
+            for (int row = 0; row < 9; row++) {
+                if (puzzle[col][row] == 0) {
+                    count++;
+                }
+            }
+        }
+        final int[] empty = new int[count];
+        count = 0;
+        for (int col = 0; col < 9; col++) {
+            for (int row = 0; row < 9; row++) {
+                if (puzzle[col][row] == 0) {
+                    empty[count++] = col * 9 + row;
+                }
+            }
+        }
+        return empty;
+    }
+
+    /**
+     * @param puzzle a puzzle indexed [col][row]
+     * @return for every cell of emptyCells(), a given in the same row,
+     *         which can not be entered into the cell
+     */
+    public static int[] conflicts(int[][] puzzle) {
+        final int[] empty = emptyCells(puzzle);
+        final int[] conflicting = new int[empty.length];
+        for (int i = 0; i < empty.length; i++) {
+            final int row = empty[i] % 9;
+            for (int c = 0; c < 9; c++) {
+                if (puzzle[c][row] > 0) {
+                    conflicting[i] = puzzle[c][row];
+                }
+            }
+        }
+        return conflicting;
+    }
+
+    public static void copy(int[][] from, int[][] to) {
+        for (int row = 0; row < 9; row++) {
+            System.arraycopy(from[row], 0, to[row], 0, 9);
+        }
+    }
+}
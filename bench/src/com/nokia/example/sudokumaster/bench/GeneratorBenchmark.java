@@ -0,0 +1,71 @@
+/**
+* Copyright (c) 2012-2014 Microsoft Mobile. All rights reserved.
+* Nokia and Nokia Connecting People are registered trademarks of Nokia Corporation. 
+* Oracle and Java are trademarks or registered trademarks of Oracle and/or its
+* affiliates. Other product and company names mentioned herein may be trademarks
+* or trade names of their respective owners. 
+* See LICENSE.TXT for license information.
+*/
+
+package com.nokia.example.sudokumaster.bench;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import com.nokia.example.sudokumaster.DifficultyRater;
+import com.nokia.example.sudokumaster.SudokuGenerator;
+
+/**
+ * Puzzle generation and rating. The seeded generator produces the same
+ * puzzle sequence in every trial. newPuzzle() measures what the game does
+ * for a new game, generating until a puzzle of medium difficulty comes
+ * up, but with no deadline, so that the wall clock does not change the
+ * work done from run to run.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class GeneratorBenchmark {
+
+    @Param({Backends.BITMASK, Backends.DANCING_LINKS})
+    public String backend;
+
+    private SudokuGenerator generator;
+    private final DifficultyRater rater = new DifficultyRater();
+    private int[][][] puzzles;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        generator = new SudokuGenerator(new Random(Fixtures.SEED), Backends.create(backend));
+        puzzles = Fixtures.puzzles(DifficultyRater.DIFFICULTY_UNKNOWN);
+        next = 0;
+    }
+
+    @Benchmark
+    public int[][] generate() {
+        return generator.generate(SudokuGenerator.SYMMETRY_ROTATIONAL);
+    }
+
+    @Benchmark
+    public int[][] newPuzzle() {
+        return generator.generate(SudokuGenerator.SYMMETRY_ROTATIONAL,
+                                  DifficultyRater.DIFFICULTY_MEDIUM, Long.MAX_VALUE);
+    }
+
+    @Benchmark
+    public int rate() {
+        final int difficulty = rater.rate(puzzles[next]);
+        next = (next + 1) % puzzles.length;
+        return difficulty;
+    }
+}
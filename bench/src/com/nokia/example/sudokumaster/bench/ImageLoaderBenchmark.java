@@ -0,0 +1,59 @@
+/**
+* Copyright (c) 2012-2014 Microsoft Mobile. All rights reserved.
+* Nokia and Nokia Connecting People are registered trademarks of Nokia Corporation. 
+* Oracle and Java are trademarks or registered trademarks of Oracle and/or its
+* affiliates. Other product and company names mentioned herein may be trademarks
+* or trade names of their respective owners. 
+* See LICENSE.TXT for license information.
+*/
+
+package com.nokia.example.sudokumaster.bench;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import javax.microedition.lcdui.Image;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import com.nokia.example.sudokumaster.ImageLoader;
+
+/**
+ * ImageLoader.scaleImage with the pixel copies in and out of Image.
+ * Needs a desktop MIDP implementation.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ImageLoaderBenchmark {
+
+    @Param({"180", "300"})
+    public int sourceSize;
+
+    @Param({"120", "240", "360"})
+    public int targetSize;
+
+    private Image source;
+
+    @Setup
+    public void setUp() {
+        final Random random = new Random(Fixtures.SEED);
+        final int[] pixels = new int[sourceSize * sourceSize];
+        for (int i = 0; i < pixels.length; i++) {
+            pixels[i] = random.nextInt();
+        }
+        source = Image.createRGBImage(pixels, sourceSize, sourceSize, false);
+    }
+
+    @Benchmark
+    public Image scaleImage() {
+        return ImageLoader.scaleImage(source, targetSize, targetSize);
+    }
+}
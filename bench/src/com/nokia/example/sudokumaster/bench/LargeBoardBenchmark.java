@@ -0,0 +1,88 @@
+/**
+* Copyright (c) 2012-2014 Microsoft Mobile. All rights reserved.
+* Nokia and Nokia Connecting People are registered trademarks of Nokia Corporation. 
+* Oracle and Java are trademarks or registered trademarks of Oracle and/or its
+* affiliates. Other product and company names mentioned herein may be trademarks
+* or trade names of their respective owners. 
+* See LICENSE.TXT for license information.
+*/
+
+package com.nokia.example.sudokumaster.bench;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import com.nokia.example.sudokumaster.BitmaskSolver;
+import com.nokia.example.sudokumaster.SudokuGenerator;
+
+/**
+ * Boards of other orders than 9x9. The puzzles are generated once in the
+ * setup with a fixed seed and the node limit the game uses, then solved
+ * and tested for uniqueness in turn.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class LargeBoardBenchmark {
+
+    private static final int PUZZLES = 8;
+    private static final int NODE_LIMIT = 50;
+
+    @Param({"2", "4", "5"})
+    public int order;
+
+    private BitmaskSolver solver;
+    private SudokuGenerator generator;
+    private int[][][] puzzles;
+    private int[][] work;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        solver = new BitmaskSolver(order);
+        solver.setNodeLimit(NODE_LIMIT);
+        generator = new SudokuGenerator(new Random(Fixtures.SEED), solver, order);
+        puzzles = new int[PUZZLES][][];
+        for (int i = 0; i < PUZZLES; i++) {
+            puzzles[i] = generator.generate(SudokuGenerator.SYMMETRY_ROTATIONAL);
+        }
+        work = new int[order * order][order * order];
+        next = 0;
+    }
+
+    @Benchmark
+    public boolean solve() {
+        final int[][] puzzle = puzzles[next];
+        next = (next + 1) % PUZZLES;
+        for (int row = 0; row < puzzle.length; row++) {
+            System.arraycopy(puzzle[row], 0, work[row], 0, puzzle.length);
+        }
+        return solver.solve(work);
+    }
+
+    @Benchmark
+    public int countSolutions() {
+        final int count = solver.countSolutions(puzzles[next], 2);
+        next = (next + 1) % PUZZLES;
+        return count;
+    }
+
+    @Benchmark
+    public int[][] newSolution() {
+        return generator.newSolution();
+    }
+
+    @Benchmark
+    public int[][] generate() {
+        return generator.generate(SudokuGenerator.SYMMETRY_ROTATIONAL);
+    }
+}
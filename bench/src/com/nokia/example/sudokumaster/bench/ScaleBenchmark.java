@@ -0,0 +1,60 @@
+/**
+* Copyright (c) 2012-2014 Microsoft Mobile. All rights reserved.
+* Nokia and Nokia Connecting People are registered trademarks of Nokia Corporation. 
+* Oracle and Java are trademarks or registered trademarks of Oracle and/or its
+* affiliates. Other product and company names mentioned herein may be trademarks
+* or trade names of their respective owners. 
+* See LICENSE.TXT for license information.
+*/
+
+package com.nokia.example.sudokumaster.bench;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import com.nokia.example.sudokumaster.ImageScaler;
+
+/**
+ * Scaling of raw pixels, the part of ImageLoader.scaleImage that does not
+ * need the LCDUI classes. The sizes match scaling the board tiles from
+ * the small and medium assets up and down.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ScaleBenchmark {
+
+    @Param({"180", "300"})
+    public int sourceSize;
+
+    @Param({"120", "240", "360"})
+    public int targetSize;
+
+    private int[] source;
+    private int[] target;
+
+    @Setup
+    public void setUp() {
+        final Random random = new Random(Fixtures.SEED);
+        source = new int[sourceSize * sourceSize];
+        for (int i = 0; i < source.length; i++) {
+            source[i] = random.nextInt();
+        }
+        target = new int[targetSize * targetSize];
+    }
+
+    @Benchmark
+    public int[] scale() {
+        ImageScaler.scale(source, sourceSize, sourceSize, target, targetSize, targetSize);
+        return target;
+    }
+}
@@ -0,0 +1,67 @@
+/**
+* Copyright (c) 2012-2014 Microsoft Mobile. All rights reserved.
+* Nokia and Nokia Connecting People are registered trademarks of Nokia Corporation. 
+* Oracle and Java are trademarks or registered trademarks of Oracle and/or its
+* affiliates. Other product and company names mentioned herein may be trademarks
+* or trade names of their respective owners. 
+* See LICENSE.TXT for license information.
+*/
+
+package com.nokia.example.sudokumaster.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import com.nokia.example.sudokumaster.Solver;
+
+/**
+ * Solves the fixture puzzles of one difficulty in turn with each backend.
+ * Every call copies the next puzzle into a work grid before solving it.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class SolverBenchmark {
+
+    @Param({Backends.BITMASK, Backends.DANCING_LINKS})
+    public String backend;
+
+    @Param({"0", "1", "2", "3"})
+    public int difficulty;
+
+    private Solver solver;
+    private int[][][] puzzles;
+    private final int[][] grid = new int[9][9];
+    private int next;
+
+    @Setup
+    public void setUp() {
+        solver = Backends.create(backend);
+        puzzles = Fixtures.puzzles(difficulty);
+        next = 0;
+    }
+
+    private int[][] nextPuzzle() {
+        Fixtures.copy(puzzles[next], grid);
+        next = (next + 1) % puzzles.length;
+        return grid;
+    }
+
+    @Benchmark
+    public boolean solve() {
+        return solver.solve(nextPuzzle());
+    }
+
+    @Benchmark
+    public int countSolutions() {
+        return solver.countSolutions(nextPuzzle(), 2);
+    }
+}
@@ -0,0 +1,108 @@
+/**
+* Copyright (c) 2012-2014 Microsoft Mobile. All rights reserved.
+* Nokia and Nokia Connecting People are registered trademarks of Nokia Corporation. 
+* Oracle and Java are trademarks or registered trademarks of Oracle and/or its
+* affiliates. Other product and company names mentioned herein may be trademarks
+* or trade names of their respective owners. 
+* See LICENSE.TXT for license information.
+*/
+
+package com.nokia.example.sudokumaster.bench;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import com.nokia.example.sudokumaster.DifficultyRater;
+import com.nokia.example.sudokumaster.SudokuModel;
+
+/**
+ * Number entry, validation and serialization of SudokuModel, on the first
+ * medium fixture puzzle. Unlike SudokuViewBenchmark, this runs without a
+ * MIDP implementation.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class SudokuModelBenchmark {
+
+    private final SudokuModel model = new SudokuModel();
+    private final SudokuModel filled = new SudokuModel();
+    private final ByteArrayOutputStream bout = new ByteArrayOutputStream(256);
+    private byte[] filledState;
+    private int[][] solution;
+    /** Empty cells of the puzzle as col * 9 + row. */
+    private int[] empty;
+    /** A given in the same row as the matching empty cell. */
+    private int[] conflicting;
+    private int next;
+
+    @Setup
+    public void setUp() throws IOException {
+        final int[][] puzzle = Fixtures.puzzles(DifficultyRater.DIFFICULTY_MEDIUM)[0];
+        solution = Fixtures.solution(puzzle);
+        empty = Fixtures.emptyCells(puzzle);
+        conflicting = Fixtures.conflicts(puzzle);
+        model.newGame(puzzle);
+        filled.newGame(puzzle);
+        for (int i = 0; i < empty.length - 1; i++) {
+            filled.setNumber(empty[i] / 9, empty[i] % 9, solution[empty[i] / 9][empty[i] % 9]);
+        }
+        filledState = getState();
+        next = 0;
+    }
+
+    private int nextCell() {
+        next = (next + 1) % empty.length;
+        return next;
+    }
+
+    /**
+     * Enters the correct digit into an empty cell and clears it again.
+     */
+    @Benchmark
+    public int setNumber() {
+        final int cell = empty[nextCell()];
+        model.setNumber(cell / 9, cell % 9, solution[cell / 9][cell % 9]);
+        model.setNumber(cell / 9, cell % 9, 0);
+        return model.getMoves();
+    }
+
+    /**
+     * Enters a digit that the row already has, which validation rejects.
+     */
+    @Benchmark
+    public boolean setConflictingNumber() {
+        final int i = nextCell();
+        return model.setNumber(empty[i] / 9, empty[i] % 9, conflicting[i]);
+    }
+
+    @Benchmark
+    public boolean isComplete() {
+        return filled.isComplete();
+    }
+
+    @Benchmark
+    public byte[] getState() throws IOException {
+        bout.reset();
+        filled.write(new DataOutputStream(bout));
+        return bout.toByteArray();
+    }
+
+    @Benchmark
+    public SudokuModel setState() throws IOException {
+        filled.read(new DataInputStream(new ByteArrayInputStream(filledState)));
+        return filled;
+    }
+}
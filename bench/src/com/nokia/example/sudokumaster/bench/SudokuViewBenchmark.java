@@ -0,0 +1,137 @@
+/**
+* Copyright (c) 2012-2014 Microsoft Mobile. All rights reserved.
+* Nokia and Nokia Connecting People are registered trademarks of Nokia Corporation. 
+* Oracle and Java are trademarks or registered trademarks of Oracle and/or its
+* affiliates. Other product and company names mentioned herein may be trademarks
+* or trade names of their respective owners. 
+* See LICENSE.TXT for license information.
+*/
+
+package com.nokia.example.sudokumaster.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import com.nokia.example.sudokumaster.DifficultyRater;
+import com.nokia.example.sudokumaster.SudokuView;
+import com.nokia.example.sudokumaster.View;
+
+/**
+ * Number entry, validation and state handling of SudokuView, on the first
+ * medium fixture puzzle. The completion and serialization benchmarks use a
+ * board where every cell but the last empty one is filled, which is the
+ * slowest case for the scans. Needs a desktop MIDP implementation.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class SudokuViewBenchmark {
+
+    private static final int BOARD_SIZE = 360;
+    private static final int TILE_SIZE = BOARD_SIZE / 9;
+    private static final SudokuView.Listener LISTENER = new SudokuView.Listener() {
+        public void onCellSelected() {
+            // Empty implementation.
+        }
+
+        public void onSetNumber() {
+            // Empty implementation.
+        }
+    };
+
+    private SudokuView view;
+    private SudokuView filled;
+    private byte[] filledState;
+    private int[][] solution;
+    /** Empty cells of the puzzle as col * 9 + row. */
+    private int[] empty;
+    /** A given in the same row as the matching empty cell. */
+    private int[] conflicting;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        final int[][] puzzle = Fixtures.puzzles(DifficultyRater.DIFFICULTY_MEDIUM)[0];
+        solution = Fixtures.solution(puzzle);
+        empty = Fixtures.emptyCells(puzzle);
+        conflicting = Fixtures.conflicts(puzzle);
+        view = newView(puzzle);
+        filled = newView(puzzle);
+        for (int i = 0; i < empty.length - 1; i++) {
+            select(filled, empty[i]);
+            filled.setNumber(solution[empty[i] / 9][empty[i] % 9]);
+        }
+        filledState = filled.getState();
+        next = 0;
+    }
+
+    private static SudokuView newView(int[][] puzzle) {
+        final SudokuView view = new SudokuView(LISTENER);
+        view.setBoardSize(BOARD_SIZE);
+        final int[][] copy = new int[9][9];
+        Fixtures.copy(puzzle, copy);
+        view.newGame(copy);
+        return view;
+    }
+
+    private static void select(SudokuView view, int cell) {
+        view.handlePointerEvent(View.POINTER_PRESSED, cell / 9 * TILE_SIZE + 1,
+                                cell % 9 * TILE_SIZE + 1);
+    }
+
+    private int nextCell() {
+        next = (next + 1) % empty.length;
+        return next;
+    }
+
+    /**
+     * Enters the correct digit into an empty cell and clears it again.
+     */
+    @Benchmark
+    public int setNumber() {
+        final int i = nextCell();
+        select(view, empty[i]);
+        view.setNumber(solution[empty[i] / 9][empty[i] % 9]);
+        view.setNumber(0);
+        return view.getMoves();
+    }
+
+    /**
+     * Enters a digit that the row already has, which validation rejects.
+     */
+    @Benchmark
+    public int setConflictingNumber() {
+        final int i = nextCell();
+        select(view, empty[i]);
+        view.setNumber(conflicting[i]);
+        return view.getMoves();
+    }
+
+    @Benchmark
+    public boolean isComplete() {
+        return filled.isComplete();
+    }
+
+    @Benchmark
+    public int getEmpty() {
+        return filled.getEmpty();
+    }
+
+    @Benchmark
+    public byte[] getState() {
+        return filled.getState();
+    }
+
+    @Benchmark
+    public SudokuView setState() {
+        filled.setState(filledState);
+        return filled;
+    }
+}
@@ -0,0 +1,102 @@
+/**
+* Copyright (c) 2012-2014 Microsoft Mobile. All rights reserved.
+* Nokia and Nokia Connecting People are registered trademarks of Nokia Corporation. 
+* Oracle and Java are trademarks or registered trademarks of Oracle and/or its
+* affiliates. Other product and company names mentioned herein may be trademarks
+* or trade names of their respective owners. 
+* See LICENSE.TXT for license information.
+*/
+
+package com.nokia.example.sudokumaster.bench;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import com.nokia.example.sudokumaster.BitmaskSolver;
+import com.nokia.example.sudokumaster.SudokuGenerator;
+import com.nokia.example.sudokumaster.SudokuModel;
+import com.nokia.example.sudokumaster.Variant;
+
+/**
+ * Moves and uniqueness tests on 9x9 variant puzzles, against classic
+ * sudoku as the baseline. One puzzle is generated in the setup with a
+ * fixed seed.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class VariantBenchmark {
+
+    @Param({"0", "1", "2", "3"})
+    public int variantType;
+
+    private final SudokuModel model = new SudokuModel();
+    private final BitmaskSolver solver = new BitmaskSolver();
+    private final int[][] solution = new int[9][9];
+    private int[][] puzzle;
+    /** Empty cells of the puzzle as row * 9 + col. */
+    private int[] empty;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        final SudokuGenerator generator =
+                new SudokuGenerator(new Random(Fixtures.SEED), solver);
+        generator.setVariantType(variantType);
+        puzzle = generator.generate(SudokuGenerator.SYMMETRY_ROTATIONAL);
+        final Variant variant = generator.getVariant();
+        solver.setVariant(variant);
+        Fixtures.copy(puzzle, solution);
+        solver.solve(solution);
+        int count = 0;
+        final int[][] transposed = new int[9][9];
+        final int[][] transposedSolution = new int[9][9];
+        for (int row = 0; row < 9; row++) {
+            for (int col = 0; col < 9; col++) {
+                transposed[col][row] = puzzle[row][col];
+                transposedSolution[col][row] = solution[row][col];
+                if (puzzle[row][col] == 0) {
+                    count++;
+                }
+            }
+        }
+        empty = new int[count];
+        count = 0;
+        for (int cell = 0; cell < 81; cell++) {
+            if (puzzle[cell / 9][cell % 9] == 0) {
+                empty[count++] = cell;
+            }
+        }
+        model.newGame(transposed, variant, transposedSolution);
+        model.setAutoNotes(true);
+        next = 0;
+    }
+
+    /**
+     * Enters the correct digit into an empty cell and clears it again,
+     * with the pencil marks kept up to date.
+     */
+    @Benchmark
+    public int setNumber() {
+        next = (next + 1) % empty.length;
+        final int row = empty[next] / 9;
+        final int col = empty[next] % 9;
+        model.setNumber(col, row, solution[row][col]);
+        model.setNumber(col, row, 0);
+        return model.getMoves();
+    }
+
+    @Benchmark
+    public int countSolutions() {
+        return solver.countSolutions(puzzle, 2);
+    }
+}
@@ -0,0 +1,62 @@
+/**
+* Copyright (c) 2012-2014 Microsoft Mobile. All rights reserved.
+* Nokia and Nokia Connecting People are registered trademarks of Nokia Corporation. 
+* Oracle and Java are trademarks or registered trademarks of Oracle and/or its
+* affiliates. Other product and company names mentioned herein may be trademarks
+* or trade names of their respective owners. 
+* See LICENSE.TXT for license information.
+*/
+
+package com.nokia.example.sudokumaster;
+
+/**
+ * Animation run by the Animator. The progress of an animation depends on
+ * the time since it was started, not on the number of frames drawn, so it
+ * takes as long on a slow device as on a fast one; the slow one just
+ * draws fewer frames of it.
+ */
+public abstract class Animation {
+
+    /** Progress as the progress goes linearly from 0 to FULL. */
+    public static final int LINEAR = 0;
+    /** Progress that starts fast and slows down towards the end. */
+    public static final int EASE_OUT = 1;
+    /** Progress at the end of an animation. */
+    public static final int FULL = 1024;
+    private final long duration;
+    private final int easing;
+    // Time the animation was started, set by the Animator.
+    long startTime;
+
+    /**
+     * @param duration length of the animation in milliseconds
+     * @param easing LINEAR or EASE_OUT
+     */
+    protected Animation(long duration, int easing) {
+        this.duration = duration;
+        this.easing = easing;
+    }
+
+    /**
+     * Called on the frames of the animation, the last time with FULL.
+     * @param progress the eased progress, from 0 to FULL
+     */
+    protected abstract void step(int progress);
+
+    /**
+     * @return the progress at the given time, from 0 to FULL
+     */
+    int getProgress(long time) {
+        final long elapsed = time - startTime;
+        if (elapsed >= duration) {
+            return FULL;
+        }
+        final int t = elapsed <= 0 ? 0 : (int) (elapsed * FULL / duration);
+        switch (easing) {
+            case EASE_OUT:
+                return t * (2 * FULL - t) / FULL;
+            default:
+                return t;
+        }
+    }
+}
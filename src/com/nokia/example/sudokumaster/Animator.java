@@ -0,0 +1,135 @@
+/**
+* Copyright (c) 2012-2014 Microsoft Mobile. All rights reserved.
+* Nokia and Nokia Connecting People are registered trademarks of Nokia Corporation. 
+* Oracle and Java are trademarks or registered trademarks of Oracle and/or its
+* affiliates. Other product and company names mentioned herein may be trademarks
+* or trade names of their respective owners. 
+* See LICENSE.TXT for license information.
+*/
+
+package com.nokia.example.sudokumaster;
+
+/**
+ * Runs the animations of the views. Only the animations that have been
+ * started and have not ended yet are kept and stepped on each frame, and
+ * the render loop runs frame after frame only while there are some. If
+ * the device falls behind, the animations skip ahead to where they should
+ * be by then.
+ */
+public class Animator {
+
+    private static Animator self;
+    private Animation[] active = new Animation[4];
+    private int count = 0;
+    // Copy of the active animations and their progress, for stepping
+    // them outside the lock.
+    private Animation[] stepping = new Animation[4];
+    private int[] progress = new int[4];
+    private Listener listener;
+
+    /**
+     * @return The singleton instance of this class.
+     */
+    public static synchronized Animator getInstance() {
+        if (self == null) {
+            self = new Animator();
+        }
+        return self;
+    }
+
+    private Animator() {
+        // Nothing to do here
+    }
+
+    public synchronized void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Starts an animation, or starts it over if it is running already.
+     */
+    public void start(Animation animation) {
+        final Listener l;
+        synchronized (this) {
+            animation.startTime = System.currentTimeMillis();
+            if (indexOf(animation) < 0) {
+                if (count == active.length) {
+                    final Animation[] grown = new Animation[2 * count];
+                    System.arraycopy(active, 0, grown, 0, count);
+                    active = grown;
+                }
+                active[count++] = animation;
+            }
+            l = listener;
+        }
+        if (l != null) {
+            l.onStarted();
+        }
+    }
+
+    /**
+     * Stops an animation without stepping it to the end.
+     */
+    public synchronized void stop(Animation animation) {
+        final int i = indexOf(animation);
+        if (i >= 0) {
+            active[i] = active[--count];
+            active[count] = null;
+        }
+    }
+
+    public synchronized boolean isRunning(Animation animation) {
+        return indexOf(animation) >= 0;
+    }
+
+    /**
+     * @return true if some animation is running
+     */
+    public synchronized boolean isActive() {
+        return count > 0;
+    }
+
+    /**
+     * Steps every running animation to where it should be now. The ones
+     * that reach their end are stepped with Animation.FULL and removed.
+     */
+    public void tick() {
+        final long now = System.currentTimeMillis();
+        int n;
+        synchronized (this) {
+            if (stepping.length < count) {
+                stepping = new Animation[active.length];
+                progress = new int[active.length];
+            }
+            n = count;
+            for (int i = count - 1; i >= 0; i--) {
+                stepping[i] = active[i];
+                progress[i] = active[i].getProgress(now);
+                if (progress[i] == Animation.FULL) {
+                    active[i] = active[--count];
+                    active[count] = null;
+                }
+            }
+        }
+        for (int i = 0; i < n; i++) {
+            stepping[i].step(progress[i]);
+            stepping[i] = null;
+        }
+    }
+
+    private int indexOf(Animation animation) {
+        for (int i = 0; i < count; i++) {
+            if (active[i] == animation) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    public static interface Listener {
+        /**
+         * Called when an animation is started.
+         */
+        void onStarted();
+    }
+}
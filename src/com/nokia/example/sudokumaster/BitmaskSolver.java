@@ -0,0 +1,408 @@
+/**
+* Copyright (c) 2012-2014 Microsoft Mobile. All rights reserved.
+* Nokia and Nokia Connecting People are registered trademarks of Nokia Corporation. 
+* Oracle and Java are trademarks or registered trademarks of Oracle and/or its
+* affiliates. Other product and company names mentioned herein may be trademarks
+* or trade names of their respective owners. 
+* See LICENSE.TXT for license information.
+*/
+
+package com.nokia.example.sudokumaster;
+
+import java.util.Random;
+
+/**
+ * Sudoku solver based on constraint propagation. The digits used in each
+ * row, column and box are kept as bitmasks, so the candidates of a cell are
+ * found with a couple of OR operations. Naked and hidden singles are placed
+ * until nothing changes, after which the solver branches on the cell with
+ * the fewest candidates. All the working memory is allocated once in the
+ * constructor and placements are undone through a trail, which keeps the
+ * search free of allocations.
+ *
+ * Boards of any order from BoardGeometry are supported. The candidates are
+ * kept in an int with one bit per digit, so a 25x25 board costs no more per
+ * operation than a 9x9 one; only the number of cells and units grows.
+ *
+ * A Variant adds its units to the rows, columns and boxes. Only the
+ * variant units of a cell are visited when the cell changes, and the
+ * digits they allow narrow its candidates. Variant units that span as many
+ * cells as a row take part in the hidden single search as well.
+ */
+public class BitmaskSolver
+    implements Solver {
+
+    private final int size;
+    private final int cellCount;
+    private final int full;
+    private final byte[] rows;
+    private final byte[] cols;
+    private final byte[] boxes;
+    private final short[][] boardUnits;
+    /** The rows, columns and boxes, followed by the units of the variant. */
+    private short[][] units;
+    private Variant variant;
+    /** The variant units of every cell, null without a variant. */
+    private short[][] cellUnits;
+
+    /** Placed digit of every cell as a single bit, 0 if empty. */
+    private final int[] cells;
+    /** Digits used in every unit, indexed like the units. */
+    private int[] used;
+    /** Cells placed by the search, in placement order. */
+    private final int[] trail;
+    private final int[] solution;
+    /**
+     * Empty cells in the first emptyCount slots. A placed cell is swapped
+     * just past the end, so undoing placements in reverse order only has to
+     * grow the count again.
+     */
+    private final int[] empty;
+    private final int[] emptyIndex;
+    private int emptyCount;
+    private int trailSize;
+    private int solutionCount;
+    private int limit;
+    private int nodeLimit = 0;
+    private int nodes;
+    // True if the last search ran out of nodes.
+    private boolean exhausted;
+    private Random random;
+
+    /**
+     * Creates a solver for 9x9 boards.
+     */
+    public BitmaskSolver() {
+        this(3);
+    }
+
+    /**
+     * @param order boxes per side of the board, see BoardGeometry
+     */
+    public BitmaskSolver(int order) {
+        final BoardGeometry geometry = BoardGeometry.get(order);
+        size = geometry.size;
+        cellCount = geometry.cells;
+        full = (1 << size) - 1;
+        rows = geometry.row;
+        cols = geometry.col;
+        boxes = geometry.box;
+        boardUnits = geometry.units;
+        units = boardUnits;
+        cells = new int[cellCount];
+        used = new int[3 * size];
+        trail = new int[cellCount];
+        solution = new int[cellCount];
+        empty = new int[cellCount];
+        emptyIndex = new int[cellCount];
+    }
+
+    /**
+     * Sets the variant whose rules apply on top of the classic ones.
+     * @param variant the variant, or null for classic sudoku
+     */
+    public void setVariant(Variant variant) {
+        this.variant = variant;
+        if (variant == null) {
+            units = boardUnits;
+            cellUnits = null;
+        }
+        else {
+            if (variant.getGeometry().size != size) {
+                throw new IllegalArgumentException("Variant of another board size");
+            }
+            units = new short[boardUnits.length + variant.units.length][];
+            System.arraycopy(boardUnits, 0, units, 0, boardUnits.length);
+            System.arraycopy(variant.units, 0, units, boardUnits.length,
+                             variant.units.length);
+            cellUnits = variant.cellUnits;
+        }
+        used = new int[units.length];
+    }
+
+    public Variant getVariant() {
+        return variant;
+    }
+
+    /**
+     * Makes the search try the candidates of a cell starting from a random
+     * one, so that solving an empty grid gives a random solution.
+     * @param random source of randomness, or null to try the lowest
+     *               candidate first
+     */
+    public void setRandom(Random random) {
+        this.random = random;
+    }
+
+    /**
+     * @see com.nokia.example.sudokumaster.Solver#solve(int[][])
+     */
+    public boolean solve(int[][] grid) {
+        if (search(grid, 1) == 0 || exhausted) {
+            return false;
+        }
+        for (int cell = 0; cell < cellCount; cell++) {
+            grid[rows[cell]][cols[cell]] = BoardGeometry.bitIndex(solution[cell]) + 1;
+        }
+        return true;
+    }
+
+    /**
+     * @see com.nokia.example.sudokumaster.Solver#countSolutions(int[][], int)
+     */
+    public int countSolutions(int[][] grid, int limit) {
+        return search(grid, limit);
+    }
+
+    /**
+     * Limits the effort of a search. A search that runs out of nodes stops
+     * and reports as many solutions as were asked for, so a uniqueness test
+     * that gives up fails safe. Large sparse boards may otherwise take very
+     * long to prove unique.
+     * @param nodeLimit maximum number of search nodes, 0 for no limit
+     */
+    public void setNodeLimit(int nodeLimit) {
+        this.nodeLimit = nodeLimit;
+    }
+
+    public int getNodeLimit() {
+        return nodeLimit;
+    }
+
+    /**
+     * Tests whether the puzzle has a solution with another digit than n in
+     * the given empty cell.
+     * @param grid the puzzle, 0 for empty cells. The grid is not modified.
+     * @param row row of the cell
+     * @param col column of the cell
+     * @param n the digit to rule out
+     * @return true if there is such a solution, or if the node limit ran out
+     */
+    public boolean hasSolutionWithout(int[][] grid, int row, int col, int n) {
+        limit = 1;
+        solutionCount = 0;
+        nodes = 0;
+        exhausted = false;
+        if (!load(grid)) {
+            return false;
+        }
+        final int cell = row * size + col;
+        int m = cells[cell] == 0 ? candidates(cell) & ~(1 << (n - 1)) : 0;
+        while (m != 0 && solutionCount == 0) {
+            final int bit = m & -m;
+            m ^= bit;
+            final int mark = trailSize;
+            push(cell, bit);
+            search();
+            undo(mark);
+        }
+        return solutionCount > 0;
+    }
+
+    private int search(int[][] grid, int limit) {
+        this.limit = limit;
+        solutionCount = 0;
+        nodes = 0;
+        exhausted = false;
+        if (limit > 0 && load(grid)) {
+            search();
+        }
+        return solutionCount;
+    }
+
+    /**
+     * Loads the givens of the grid into the bitmasks.
+     * @return false if the givens contradict each other
+     */
+    private boolean load(int[][] grid) {
+        for (int u = 0; u < used.length; u++) {
+            used[u] = 0;
+        }
+        for (int cell = 0; cell < cellCount; cell++) {
+            cells[cell] = 0;
+            empty[cell] = cell;
+            emptyIndex[cell] = cell;
+        }
+        emptyCount = cellCount;
+        trailSize = 0;
+        for (int cell = 0; cell < cellCount; cell++) {
+            final int n = grid[rows[cell]][cols[cell]];
+            if (n < 1 || n > size) {
+                continue;
+            }
+            final int bit = 1 << (n - 1);
+            if ((candidates(cell) & bit) == 0) {
+                return false;
+            }
+            place(cell, bit);
+        }
+        return true;
+    }
+
+    private void search() {
+        final int mark = trailSize;
+        if (nodeLimit > 0 && ++nodes > nodeLimit) {
+            solutionCount = limit;
+            exhausted = true;
+        }
+        else if (propagate()) {
+            int best = -1;
+            int bestCount = size + 1;
+            for (int i = 0; i < emptyCount && bestCount > 2; i++) {
+                final int cell = empty[i];
+                final int count = BoardGeometry.bitCount(candidates(cell));
+                if (count < bestCount) {
+                    best = cell;
+                    bestCount = count;
+                }
+            }
+            if (best < 0) {
+                if (solutionCount++ == 0) {
+                    System.arraycopy(cells, 0, solution, 0, cellCount);
+                }
+            }
+            else {
+                int m = candidates(best);
+                int first = 0;
+                if (random != null) {
+                    first = m;
+                    for (int skip = random.nextInt(bestCount); skip > 0; skip--) {
+                        first &= first - 1;
+                    }
+                    first &= -first;
+                }
+                while (m != 0 && solutionCount < limit) {
+                    final int bit = first != 0 ? first : m & -m;
+                    first = 0;
+                    m ^= bit;
+                    final int branchMark = trailSize;
+                    push(best, bit);
+                    search();
+                    undo(branchMark);
+                }
+            }
+        }
+        undo(mark);
+    }
+
+    /**
+     * Places naked singles until there are none left, then looks for one
+     * round of hidden singles, and repeats while anything was placed.
+     * @return false if a contradiction was found
+     */
+    private boolean propagate() {
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (int i = emptyCount - 1; i >= 0; i--) {
+                final int cell = empty[i];
+                final int m = candidates(cell);
+                if (m == 0) {
+                    return false;
+                }
+                if ((m & (m - 1)) == 0) {
+                    push(cell, m);
+                    changed = true;
+                }
+            }
+            if (changed) {
+                continue;
+            }
+            for (int u = 0; u < units.length; u++) {
+                final int placed = used[u];
+                if (placed == full || units[u].length != size) {
+                    continue;
+                }
+                final short[] unit = units[u];
+                int once = 0;
+                int twice = 0;
+                for (int i = 0; i < size; i++) {
+                    final int cell = unit[i];
+                    if (cells[cell] == 0) {
+                        final int m = candidates(cell);
+                        twice |= once & m;
+                        once |= m;
+                    }
+                }
+                if ((once | placed) != full) {
+                    return false;
+                }
+                int singles = once & ~twice;
+                while (singles != 0) {
+                    final int bit = singles & -singles;
+                    singles ^= bit;
+                    int i = 0;
+                    while (i < size && (cells[unit[i]] != 0
+                            || (candidates(unit[i]) & bit) == 0)) {
+                        i++;
+                    }
+                    if (i == size) {
+                        return false;
+                    }
+                    push(unit[i], bit);
+                    changed = true;
+                }
+            }
+        }
+        return true;
+    }
+
+    private int candidates(int cell) {
+        int m = ~(used[rows[cell]] | used[size + cols[cell]]
+                  | used[2 * size + boxes[cell]]) & full;
+        if (cellUnits != null) {
+            // The variant keeps the digits as bits 1 to size.
+            final short[] extra = cellUnits[cell];
+            for (int i = 0; i < extra.length; i++) {
+                final int u = extra[i];
+                m &= variant.allowed(u, used[3 * size + u] << 1) >> 1;
+            }
+        }
+        return m;
+    }
+
+    private void place(int cell, int bit) {
+        final int i = emptyIndex[cell];
+        final int last = empty[--emptyCount];
+        empty[i] = last;
+        emptyIndex[last] = i;
+        empty[emptyCount] = cell;
+        emptyIndex[cell] = emptyCount;
+        cells[cell] = bit;
+        used[rows[cell]] |= bit;
+        used[size + cols[cell]] |= bit;
+        used[2 * size + boxes[cell]] |= bit;
+        if (cellUnits != null) {
+            final short[] extra = cellUnits[cell];
+            for (int u = 0; u < extra.length; u++) {
+                used[3 * size + extra[u]] |= bit;
+            }
+        }
+    }
+
+    /**
+     * Places a digit found by the search and records it on the trail.
+     */
+    private void push(int cell, int bit) {
+        place(cell, bit);
+        trail[trailSize++] = cell;
+    }
+
+    private void undo(int mark) {
+        while (trailSize > mark) {
+            final int cell = trail[--trailSize];
+            final int bit = ~cells[cell];
+            cells[cell] = 0;
+            emptyCount++;
+            used[rows[cell]] &= bit;
+            used[size + cols[cell]] &= bit;
+            used[2 * size + boxes[cell]] &= bit;
+            if (cellUnits != null) {
+                final short[] extra = cellUnits[cell];
+                for (int i = 0; i < extra.length; i++) {
+                    used[3 * size + extra[i]] &= bit;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,154 @@
+/**
+* Copyright (c) 2012-2014 Microsoft Mobile. All rights reserved.
+* Nokia and Nokia Connecting People are registered trademarks of Nokia Corporation. 
+* Oracle and Java are trademarks or registered trademarks of Oracle and/or its
+* affiliates. Other product and company names mentioned herein may be trademarks
+* or trade names of their respective owners. 
+* See LICENSE.TXT for license information.
+*/
+
+package com.nokia.example.sudokumaster;
+
+/**
+ * Shape of a board of a given order: an order x order grid of boxes, each
+ * holding order x order cells, so a 9x9 board has order 3 and a 16x16
+ * board order 4. Cells are indexed row by row. The lookup tables are built
+ * once per order and shared, since they never change.
+ */
+public class BoardGeometry {
+
+    public static final int MIN_ORDER = 2;
+    public static final int MAX_ORDER = 5;
+    private static final BoardGeometry[] geometries = new BoardGeometry[MAX_ORDER + 1];
+    /** Digits shown on the board; digits above 9 are shown as letters. */
+    private static final String SYMBOLS = "0123456789ABCDEFGHIJKLMNOP";
+    /** Boxes per side, and cells per side of a box. */
+    public final int order;
+    /** Cells per side. */
+    public final int size;
+    public final int cells;
+    /** Bits 1 to size, the digits of a full unit. */
+    public final int all;
+    /** Row, column and box of every cell. */
+    final byte[] row;
+    final byte[] col;
+    final byte[] box;
+    /** Cells of the rows, then the columns, then the boxes. */
+    final short[][] units;
+    /** The other cells in the same row, column or box as each cell. */
+    final short[][] peers;
+
+    private BoardGeometry(int order) {
+        this.order = order;
+        size = order * order;
+        cells = size * size;
+        all = (1 << (size + 1)) - 2;
+        row = new byte[cells];
+        col = new byte[cells];
+        box = new byte[cells];
+        units = new short[3 * size][size];
+        for (int cell = 0; cell < cells; cell++) {
+            final int r = cell / size;
+            final int c = cell % size;
+            final int b = r / order * order + c / order;
+            row[cell] = (byte) r;
+            col[cell] = (byte) c;
+            box[cell] = (byte) b;
+            units[r][c] = (short) cell;
+            units[size + c][r] = (short) cell;
+            units[2 * size + b][r % order * order + c % order] = (short) cell;
+        }
+        final int peerCount = 2 * (size - 1) + (order - 1) * (order - 1);
+        peers = new short[cells][peerCount];
+        for (int cell = 0; cell < cells; cell++) {
+            int n = 0;
+            for (int other = 0; other < cells; other++) {
+                if (other != cell && (row[other] == row[cell] || col[other] == col[cell]
+                        || box[other] == box[cell])) {
+                    peers[cell][n++] = (short) other;
+                }
+            }
+        }
+    }
+
+    /**
+     * @param order boxes per side, MIN_ORDER to MAX_ORDER
+     * @return the geometry of the order
+     */
+    public static synchronized BoardGeometry get(int order) {
+        if (order < MIN_ORDER || order > MAX_ORDER) {
+            throw new IllegalArgumentException("Bad board order " + order);
+        }
+        if (geometries[order] == null) {
+            geometries[order] = new BoardGeometry(order);
+        }
+        return geometries[order];
+    }
+
+    /**
+     * @param size cells per side of a square grid
+     * @return the geometry of a board of that size
+     */
+    public static BoardGeometry forSize(int size) {
+        int order = MIN_ORDER;
+        while (order < MAX_ORDER && order * order < size) {
+            order++;
+        }
+        if (order * order != size) {
+            throw new IllegalArgumentException("Bad board size " + size);
+        }
+        return get(order);
+    }
+
+    public int getRow(int cell) {
+        return row[cell];
+    }
+
+    public int getCol(int cell) {
+        return col[cell];
+    }
+
+    public int getBox(int cell) {
+        return box[cell];
+    }
+
+    /**
+     * @return the character shown for a digit
+     */
+    public static char symbol(int n) {
+        return SYMBOLS.charAt(n);
+    }
+
+    /**
+     * Counts the set bits.
+     */
+    static int bitCount(int m) {
+        m = m - ((m >>> 1) & 0x55555555);
+        m = (m & 0x33333333) + ((m >>> 2) & 0x33333333);
+        m = (m + (m >>> 4)) & 0x0f0f0f0f;
+        return (m * 0x01010101) >>> 24;
+    }
+
+    /**
+     * @return the index of the only set bit
+     */
+    static int bitIndex(int bit) {
+        int i = 0;
+        if ((bit & 0xffff0000) != 0) {
+            i += 16;
+        }
+        if ((bit & 0xff00ff00) != 0) {
+            i += 8;
+        }
+        if ((bit & 0xf0f0f0f0) != 0) {
+            i += 4;
+        }
+        if ((bit & 0xcccccccc) != 0) {
+            i += 2;
+        }
+        if ((bit & 0xaaaaaaaa) != 0) {
+            i += 1;
+        }
+        return i;
+    }
+}
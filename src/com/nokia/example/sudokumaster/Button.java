@@ -82,9 +82,9 @@ public class Button
 
     private void changeState(int newState) {
         if (state != newState) {
+            state = newState;
             invalidate();
         }
-        state = newState;
     }
 
     /**
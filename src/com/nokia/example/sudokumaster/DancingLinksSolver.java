@@ -0,0 +1,201 @@
+/**
+* Copyright (c) 2012-2014 Microsoft Mobile. All rights reserved.
+* Nokia and Nokia Connecting People are registered trademarks of Nokia Corporation. 
+* Oracle and Java are trademarks or registered trademarks of Oracle and/or its
+* affiliates. Other product and company names mentioned herein may be trademarks
+* or trade names of their respective owners. 
+* See LICENSE.TXT for license information.
+*/
+
+package com.nokia.example.sudokumaster;
+
+/**
+ * Sudoku solver based on Knuth's Algorithm X with Dancing Links. A 9x9
+ * sudoku is an exact cover problem with 324 columns (one digit in every
+ * cell, every digit once in every row, column and box) and 729 rows (each
+ * digit in each cell). The whole matrix is built once into flat int arrays
+ * in the constructor. Solving covers the rows of the givens, searches, and
+ * uncovers everything again, so the matrix is reused without allocating.
+ */
+public class DancingLinksSolver
+    implements Solver {
+
+    private static final int SIZE = 9;
+    private static final int CELLS = 81;
+    private static final int COLUMNS = 4 * CELLS;
+    private static final int ROWS = SIZE * CELLS;
+    private static final int ROOT = 0;
+    /** Index of the first row node, after the root and the column headers. */
+    private static final int FIRST_NODE = COLUMNS + 1;
+    private static final int NODES = FIRST_NODE + 4 * ROWS;
+    private final int[] left = new int[NODES];
+    private final int[] right = new int[NODES];
+    private final int[] up = new int[NODES];
+    private final int[] down = new int[NODES];
+    private final int[] column = new int[NODES];
+    private final int[] size = new int[COLUMNS + 1];
+    private final boolean[] covered = new boolean[COLUMNS + 1];
+    /** Rows of the givens, followed by the rows chosen by the search. */
+    private final int[] chosen = new int[CELLS];
+    private final int[] solution = new int[CELLS];
+    private int givenCount;
+    private int solutionCount;
+    private int limit;
+
+    public DancingLinksSolver() {
+        for (int c = 0; c <= COLUMNS; c++) {
+            left[c] = c == 0 ? COLUMNS : c - 1;
+            right[c] = c == COLUMNS ? 0 : c + 1;
+            up[c] = c;
+            down[c] = c;
+            column[c] = c;
+        }
+        for (int row = 0; row < ROWS; row++) {
+            final int cell = row / SIZE;
+            final int d = row % SIZE;
+            final int r = cell / SIZE;
+            final int c = cell % SIZE;
+            final int b = r / 3 * 3 + c / 3;
+            final int first = FIRST_NODE + 4 * row;
+            appendNode(first, 1 + cell);
+            appendNode(first + 1, 1 + CELLS + r * SIZE + d);
+            appendNode(first + 2, 1 + 2 * CELLS + c * SIZE + d);
+            appendNode(first + 3, 1 + 3 * CELLS + b * SIZE + d);
+            for (int k = 0; k < 4; k++) {
+                left[first + k] = first + (k + 3) % 4;
+                right[first + k] = first + (k + 1) % 4;
+            }
+        }
+    }
+
+    private void appendNode(int node, int c) {
+        column[node] = c;
+        up[node] = up[c];
+        down[node] = c;
+        down[up[c]] = node;
+        up[c] = node;
+        size[c]++;
+    }
+
+    /**
+     * @see com.nokia.example.sudokumaster.Solver#solve(int[][])
+     */
+    public boolean solve(int[][] grid) {
+        if (search(grid, 1) == 0) {
+            return false;
+        }
+        for (int i = 0; i < CELLS; i++) {
+            final int row = (solution[i] - FIRST_NODE) / 4;
+            final int cell = row / SIZE;
+            grid[cell / SIZE][cell % SIZE] = row % SIZE + 1;
+        }
+        return true;
+    }
+
+    /**
+     * @see com.nokia.example.sudokumaster.Solver#countSolutions(int[][], int)
+     */
+    public int countSolutions(int[][] grid, int limit) {
+        return search(grid, limit);
+    }
+
+    private int search(int[][] grid, int limit) {
+        this.limit = limit;
+        solutionCount = 0;
+        if (limit > 0 && chooseGivens(grid)) {
+            search(givenCount);
+        }
+        releaseGivens();
+        return solutionCount;
+    }
+
+    /**
+     * Covers the columns of the rows matching the givens.
+     * @return false if two givens compete for the same column
+     */
+    private boolean chooseGivens(int[][] grid) {
+        givenCount = 0;
+        for (int cell = 0; cell < CELLS; cell++) {
+            final int n = grid[cell / SIZE][cell % SIZE];
+            if (n < 1 || n > SIZE) {
+                continue;
+            }
+            final int node = FIRST_NODE + 4 * (cell * SIZE + n - 1);
+            for (int k = 0; k < 4; k++) {
+                if (covered[column[node + k]]) {
+                    return false;
+                }
+            }
+            for (int k = 0; k < 4; k++) {
+                cover(column[node + k]);
+            }
+            chosen[givenCount++] = node;
+        }
+        return true;
+    }
+
+    private void releaseGivens() {
+        while (givenCount > 0) {
+            final int node = chosen[--givenCount];
+            for (int k = 3; k >= 0; k--) {
+                uncover(column[node + k]);
+            }
+        }
+    }
+
+    private void search(int k) {
+        if (right[ROOT] == ROOT) {
+            if (solutionCount++ == 0) {
+                System.arraycopy(chosen, 0, solution, 0, CELLS);
+            }
+            return;
+        }
+        int c = right[ROOT];
+        for (int j = right[c]; j != ROOT && size[c] > 1; j = right[j]) {
+            if (size[j] < size[c]) {
+                c = j;
+            }
+        }
+        if (size[c] == 0) {
+            return;
+        }
+        cover(c);
+        for (int r = down[c]; r != c && solutionCount < limit; r = down[r]) {
+            chosen[k] = r;
+            for (int j = right[r]; j != r; j = right[j]) {
+                cover(column[j]);
+            }
+            search(k + 1);
+            for (int j = left[r]; j != r; j = left[j]) {
+                uncover(column[j]);
+            }
+        }
+        uncover(c);
+    }
+
+    private void cover(int c) {
+        covered[c] = true;
+        right[left[c]] = right[c];
+        left[right[c]] = left[c];
+        for (int i = down[c]; i != c; i = down[i]) {
+            for (int j = right[i]; j != i; j = right[j]) {
+                down[up[j]] = down[j];
+                up[down[j]] = up[j];
+                size[column[j]]--;
+            }
+        }
+    }
+
+    private void uncover(int c) {
+        for (int i = up[c]; i != c; i = up[i]) {
+            for (int j = left[i]; j != i; j = left[j]) {
+                size[column[j]]++;
+                down[up[j]] = j;
+                up[down[j]] = j;
+            }
+        }
+        right[left[c]] = c;
+        left[right[c]] = c;
+        covered[c] = false;
+    }
+}
@@ -0,0 +1,37 @@
+/**
+* Copyright (c) 2012-2014 Microsoft Mobile. All rights reserved.
+* Nokia and Nokia Connecting People are registered trademarks of Nokia Corporation. 
+* Oracle and Java are trademarks or registered trademarks of Oracle and/or its
+* affiliates. Other product and company names mentioned herein may be trademarks
+* or trade names of their respective owners. 
+* See LICENSE.TXT for license information.
+*/
+
+package com.nokia.example.sudokumaster;
+
+/**
+ * Diagonal sudoku, also known as Sudoku X: both main diagonals must hold
+ * every digit once, like the rows and columns.
+ */
+public class DiagonalVariant
+    extends Variant {
+
+    public DiagonalVariant(BoardGeometry geometry) {
+        super(geometry);
+        final int size = geometry.size;
+        final short[][] diagonals = new short[2][size];
+        for (int i = 0; i < size; i++) {
+            diagonals[0][i] = (short) (i * size + i);
+            diagonals[1][i] = (short) (i * size + size - 1 - i);
+        }
+        setUnits(diagonals);
+    }
+
+    public int getType() {
+        return DIAGONAL;
+    }
+
+    public boolean isShaded(int cell) {
+        return cellUnits[cell].length > 0;
+    }
+}
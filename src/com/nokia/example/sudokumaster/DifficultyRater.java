@@ -0,0 +1,760 @@
+/**
+* Copyright (c) 2012-2014 Microsoft Mobile. All rights reserved.
+* Nokia and Nokia Connecting People are registered trademarks of Nokia Corporation. 
+* Oracle and Java are trademarks or registered trademarks of Oracle and/or its
+* affiliates. Other product and company names mentioned herein may be trademarks
+* or trade names of their respective owners. 
+* See LICENSE.TXT for license information.
+*/
+
+package com.nokia.example.sudokumaster;
+
+/**
+ * Rates puzzles by solving them the way a person would. The techniques are
+ * tried in order from the easiest to the hardest, and after every step the
+ * search starts over from the easiest one. The puzzle is scored by the
+ * hardest technique it needed and by how many times it was needed.
+ *
+ * The candidates are kept both per cell and as one bitboard per digit. A
+ * bitboard holds the 81 cells in three ints, one 27-bit int for each band
+ * of three rows, so a whole unit can be tested with three AND operations.
+ *
+ * With tracing on, every step also records the cells of the pattern it
+ * used and the candidates it removed, which HintEngine shows to the user.
+ */
+public class DifficultyRater {
+
+    public static final int HIDDEN_SINGLE = 0;
+    public static final int NAKED_SINGLE = 1;
+    public static final int LOCKED_CANDIDATES = 2;
+    public static final int NAKED_PAIR = 3;
+    public static final int HIDDEN_PAIR = 4;
+    public static final int NAKED_TRIPLE = 5;
+    public static final int HIDDEN_TRIPLE = 6;
+    public static final int X_WING = 7;
+    public static final int SWORDFISH = 8;
+    public static final int XY_WING = 9;
+    public static final int TECHNIQUES = 10;
+    public static final String[] TECHNIQUE_NAMES = {
+        "Hidden single", "Naked single", "Locked candidates", "Naked pair",
+        "Hidden pair", "Naked triple", "Hidden triple", "X-Wing", "Swordfish",
+        "XY-Wing"};
+    /** The rating ran out of time or the puzzle is invalid. */
+    public static final int DIFFICULTY_UNKNOWN = -1;
+    /** Singles only. */
+    public static final int DIFFICULTY_EASY = 0;
+    /** Locked candidates and subsets. */
+    public static final int DIFFICULTY_MEDIUM = 1;
+    /** Fish and wings. */
+    public static final int DIFFICULTY_HARD = 2;
+    /** Needs more than the techniques known to the rater. */
+    public static final int DIFFICULTY_EXPERT = 3;
+    private static final int SIZE = 9;
+    private static final int CELLS = 81;
+    private static final int ALL = 0x1ff;
+    private static final int BAND_CELLS = 27;
+    /** Number of set bits for every 9-bit mask. */
+    private static final byte[] BIT_COUNT = new byte[ALL + 1];
+    /** Digit (1-9) of the lowest set bit for every 9-bit mask, 0 for none. */
+    private static final byte[] LOWEST_DIGIT = new byte[ALL + 1];
+    /** Row, column and box of every cell. */
+    private static final byte[] ROW = new byte[CELLS];
+    private static final byte[] COL = new byte[CELLS];
+    private static final byte[] BOX = new byte[CELLS];
+    /** Cells of the 9 rows, 9 columns and 9 boxes. */
+    private static final byte[][] UNITS = new byte[3 * SIZE][SIZE];
+    /** The 20 cells sharing a unit with each cell. */
+    static final byte[][] PEERS = new byte[CELLS][20];
+    /** Bitboards of the 27 units, three ints per unit. */
+    private static final int[] UNIT_BOARDS = new int[3 * 3 * SIZE];
+    /** Bitboards of the peers of every cell, three ints per cell. */
+    private static final int[] PEER_BOARDS = new int[3 * CELLS];
+
+    static {
+        for (int m = 1; m <= ALL; m++) {
+            BIT_COUNT[m] = (byte) (BIT_COUNT[m >> 1] + (m & 1));
+            int d = 1;
+            while ((m & (1 << (d - 1))) == 0) {
+                d++;
+            }
+            LOWEST_DIGIT[m] = (byte) d;
+        }
+        for (int cell = 0; cell < CELLS; cell++) {
+            final int row = cell / SIZE;
+            final int col = cell % SIZE;
+            final int box = row / 3 * 3 + col / 3;
+            final int boxIndex = row % 3 * 3 + col % 3;
+            ROW[cell] = (byte) row;
+            COL[cell] = (byte) col;
+            BOX[cell] = (byte) box;
+            UNITS[row][col] = (byte) cell;
+            UNITS[SIZE + col][row] = (byte) cell;
+            UNITS[2 * SIZE + box][boxIndex] = (byte) cell;
+        }
+        for (int u = 0; u < UNITS.length; u++) {
+            for (int i = 0; i < SIZE; i++) {
+                final int cell = UNITS[u][i];
+                UNIT_BOARDS[3 * u + cell / BAND_CELLS] |= 1 << (cell % BAND_CELLS);
+            }
+        }
+        for (int cell = 0; cell < CELLS; cell++) {
+            int n = 0;
+            for (int other = 0; other < CELLS; other++) {
+                if (other != cell && (ROW[other] == ROW[cell]
+                        || COL[other] == COL[cell] || BOX[other] == BOX[cell])) {
+                    PEERS[cell][n++] = (byte) other;
+                    PEER_BOARDS[3 * cell + other / BAND_CELLS]
+                            |= 1 << (other % BAND_CELLS);
+                }
+            }
+        }
+    }
+
+    private final int[] values = new int[CELLS];
+    private final int[] candidates = new int[CELLS];
+    /** Candidate bitboards, three ints for each digit. */
+    private final int[] boards = new int[3 * SIZE];
+    private final int[] counts = new int[TECHNIQUES];
+    /** Scratch space for one unit, indexed by digit or by cell in unit. */
+    private final int[] masks = new int[SIZE];
+    private final int[] indices = new int[SIZE];
+    private int emptyCount;
+    private int hardest;
+    private int difficulty = DIFFICULTY_UNKNOWN;
+    private boolean trace = false;
+    /** Cells of the pattern behind the last step, as a bitboard. */
+    private final int[] pattern = new int[3];
+    /** Candidates removed by the last step, as cell * 16 + digit. */
+    private final short[] removed = new short[CELLS * SIZE];
+    private int removedCount;
+    private int placedCell = -1;
+
+    /**
+     * Rates the puzzle without a time limit.
+     * @param grid the puzzle, 0 for empty cells
+     * @return one of the DIFFICULTY_ constants
+     */
+    public int rate(int[][] grid) {
+        return rate(grid, 0);
+    }
+
+    /**
+     * Rates the puzzle.
+     * @param grid the puzzle, 0 for empty cells
+     * @param deadline time in milliseconds at which the rating gives up, or 0
+     *                 for no limit
+     * @return one of the DIFFICULTY_ constants
+     */
+    public int rate(int[][] grid, long deadline) {
+        difficulty = DIFFICULTY_UNKNOWN;
+        hardest = -1;
+        for (int t = 0; t < TECHNIQUES; t++) {
+            counts[t] = 0;
+        }
+        if (!load(grid)) {
+            return difficulty;
+        }
+        while (emptyCount > 0) {
+            if (deadline > 0 && System.currentTimeMillis() > deadline) {
+                return difficulty;
+            }
+            final int technique = step();
+            if (technique < 0) {
+                difficulty = DIFFICULTY_EXPERT;
+                return difficulty;
+            }
+            counts[technique]++;
+            if (technique > hardest) {
+                hardest = technique;
+            }
+        }
+        if (hardest <= NAKED_SINGLE) {
+            difficulty = DIFFICULTY_EASY;
+        }
+        else if (hardest <= HIDDEN_TRIPLE) {
+            difficulty = DIFFICULTY_MEDIUM;
+        }
+        else {
+            difficulty = DIFFICULTY_HARD;
+        }
+        return difficulty;
+    }
+
+    public int getDifficulty() {
+        return difficulty;
+    }
+
+    /**
+     * @return the hardest technique needed by the last rated puzzle, or -1
+     */
+    public int getHardestTechnique() {
+        return hardest;
+    }
+
+    /**
+     * @return how many times the technique was applied to the last puzzle
+     */
+    public int getCount(int technique) {
+        return counts[technique];
+    }
+
+    /**
+     * Scores the last rated puzzle. Puzzles are ordered by the hardest
+     * technique first, and by how often it was needed second.
+     * @return the score, or 0 if the puzzle was not solved
+     */
+    public int getScore() {
+        if (difficulty == DIFFICULTY_UNKNOWN || difficulty == DIFFICULTY_EXPERT
+                || hardest < 0) {
+            return 0;
+        }
+        return (hardest + 1) * 100 + Math.min(counts[hardest], 99);
+    }
+
+    /**
+     * Loads a grid for stepping through it with apply().
+     * @return false if the grid has conflicting numbers
+     */
+    boolean load(int[][] grid) {
+        for (int cell = 0; cell < CELLS; cell++) {
+            values[cell] = 0;
+            candidates[cell] = ALL;
+        }
+        for (int i = 0; i < boards.length; i++) {
+            boards[i] = (1 << BAND_CELLS) - 1;
+        }
+        emptyCount = CELLS;
+        for (int cell = 0; cell < CELLS; cell++) {
+            final int n = grid[ROW[cell]][COL[cell]];
+            if (n < 1 || n > SIZE) {
+                continue;
+            }
+            if ((candidates[cell] & (1 << (n - 1))) == 0) {
+                return false;
+            }
+            place(cell, n - 1);
+        }
+        return true;
+    }
+
+    /**
+     * Applies the easiest technique that makes progress.
+     * @return the technique applied, or -1 if none of them helped
+     */
+    private int step() {
+        for (int t = 0; t < TECHNIQUES; t++) {
+            if (apply(t)) {
+                return t;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Applies one technique once.
+     * @param technique one of the technique constants
+     * @return true if the technique made progress
+     */
+    boolean apply(int technique) {
+        if (trace) {
+            pattern[0] = 0;
+            pattern[1] = 0;
+            pattern[2] = 0;
+            removedCount = 0;
+            placedCell = -1;
+        }
+        switch (technique) {
+            case HIDDEN_SINGLE:
+                return hiddenSingle();
+            case NAKED_SINGLE:
+                return nakedSingle();
+            case LOCKED_CANDIDATES:
+                return lockedCandidates();
+            case NAKED_PAIR:
+                return nakedSubset(2);
+            case HIDDEN_PAIR:
+                return hiddenSubset(2);
+            case NAKED_TRIPLE:
+                return nakedSubset(3);
+            case HIDDEN_TRIPLE:
+                return hiddenSubset(3);
+            case X_WING:
+                return fish(2);
+            case SWORDFISH:
+                return fish(3);
+            case XY_WING:
+                return xyWing();
+            default:
+                return false;
+        }
+    }
+
+    void setTrace(boolean trace) {
+        this.trace = trace;
+    }
+
+    int getValue(int cell) {
+        return values[cell];
+    }
+
+    /**
+     * Places a number found outside the techniques.
+     * @param n the number, 1-9
+     * @return false if the number is not a candidate of the cell
+     */
+    boolean placeValue(int cell, int n) {
+        if (values[cell] != 0 || (candidates[cell] & (1 << (n - 1))) == 0) {
+            return false;
+        }
+        place(cell, n - 1);
+        return true;
+    }
+
+    boolean isPatternCell(int cell) {
+        return (pattern[cell / BAND_CELLS] & (1 << (cell % BAND_CELLS))) != 0;
+    }
+
+    /**
+     * @return the cell where the last step placed a number, or -1
+     */
+    int getPlacedCell() {
+        return placedCell;
+    }
+
+    int getRemovedCount() {
+        return removedCount;
+    }
+
+    /**
+     * @return a candidate removed by the last step, as cell * 16 + digit
+     */
+    int getRemoved(int i) {
+        return removed[i];
+    }
+
+    private void mark(int cell) {
+        pattern[cell / BAND_CELLS] |= 1 << (cell % BAND_CELLS);
+    }
+
+    private void mark(int b0, int b1, int b2) {
+        pattern[0] |= b0;
+        pattern[1] |= b1;
+        pattern[2] |= b2;
+    }
+
+    private boolean hiddenSingle() {
+        for (int u = 0; u < UNITS.length; u++) {
+            for (int d = 0; d < SIZE; d++) {
+                final int b0 = boards[3 * d] & UNIT_BOARDS[3 * u];
+                final int b1 = boards[3 * d + 1] & UNIT_BOARDS[3 * u + 1];
+                final int b2 = boards[3 * d + 2] & UNIT_BOARDS[3 * u + 2];
+                if (bitCount(b0) + bitCount(b1) + bitCount(b2) == 1) {
+                    mark(UNIT_BOARDS[3 * u], UNIT_BOARDS[3 * u + 1], UNIT_BOARDS[3 * u + 2]);
+                    place(firstCell(b0, b1, b2), d);
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private boolean nakedSingle() {
+        for (int cell = 0; cell < CELLS; cell++) {
+            final int m = candidates[cell];
+            if (m != 0 && (m & (m - 1)) == 0) {
+                mark(PEER_BOARDS[3 * cell], PEER_BOARDS[3 * cell + 1],
+                     PEER_BOARDS[3 * cell + 2]);
+                place(cell, LOWEST_DIGIT[m] - 1);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Pointing: if a digit of a box is confined to one line, it can be
+     * removed from the rest of that line. Claiming: if a digit of a line is
+     * confined to one box, it can be removed from the rest of that box.
+     */
+    private boolean lockedCandidates() {
+        for (int d = 0; d < SIZE; d++) {
+            for (int u = 0; u < UNITS.length; u++) {
+                final int b0 = boards[3 * d] & UNIT_BOARDS[3 * u];
+                final int b1 = boards[3 * d + 1] & UNIT_BOARDS[3 * u + 1];
+                final int b2 = boards[3 * d + 2] & UNIT_BOARDS[3 * u + 2];
+                if ((b0 | b1 | b2) == 0) {
+                    continue;
+                }
+                final int first = firstCell(b0, b1, b2);
+                if (u >= 2 * SIZE) {
+                    if (lockedIn(d, u, ROW[first], b0, b1, b2)
+                            || lockedIn(d, u, SIZE + COL[first], b0, b1, b2)) {
+                        return true;
+                    }
+                }
+                else if (lockedIn(d, u, 2 * SIZE + BOX[first], b0, b1, b2)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * If the cells b0-b2 of unit u all lie in unit v, removes the digit
+     * from the rest of v.
+     */
+    private boolean lockedIn(int d, int u, int v, int b0, int b1, int b2) {
+        if ((b0 & ~UNIT_BOARDS[3 * v]) != 0
+                || (b1 & ~UNIT_BOARDS[3 * v + 1]) != 0
+                || (b2 & ~UNIT_BOARDS[3 * v + 2]) != 0) {
+            return false;
+        }
+        if (eliminate(d,
+                      boards[3 * d] & UNIT_BOARDS[3 * v] & ~UNIT_BOARDS[3 * u],
+                      boards[3 * d + 1] & UNIT_BOARDS[3 * v + 1] & ~UNIT_BOARDS[3 * u + 1],
+                      boards[3 * d + 2] & UNIT_BOARDS[3 * v + 2] & ~UNIT_BOARDS[3 * u + 2])) {
+            mark(b0, b1, b2);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Naked pairs and triples: k cells of a unit with only k candidates
+     * between them take those digits from the other cells of the unit.
+     */
+    private boolean nakedSubset(int k) {
+        for (int u = 0; u < UNITS.length; u++) {
+            final byte[] unit = UNITS[u];
+            int n = 0;
+            for (int i = 0; i < SIZE; i++) {
+                final int count = BIT_COUNT[candidates[unit[i]]];
+                if (count >= 2 && count <= k) {
+                    indices[n++] = i;
+                }
+            }
+            for (int a = 0; a < n; a++) {
+                final int ma = candidates[unit[indices[a]]];
+                for (int b = a + 1; b < n; b++) {
+                    final int mb = ma | candidates[unit[indices[b]]];
+                    final int inAB = (1 << indices[a]) | (1 << indices[b]);
+                    if (k == 2) {
+                        if (BIT_COUNT[mb] == 2 && eliminateDigits(unit, inAB, mb)) {
+                            return true;
+                        }
+                        continue;
+                    }
+                    for (int c = b + 1; c < n; c++) {
+                        final int mc = mb | candidates[unit[indices[c]]];
+                        if (BIT_COUNT[mc] == 3
+                                && eliminateDigits(unit, inAB | (1 << indices[c]), mc)) {
+                            return true;
+                        }
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Hidden pairs and triples: k digits confined to the same k cells of a
+     * unit remove all other candidates from those cells.
+     */
+    private boolean hiddenSubset(int k) {
+        for (int u = 0; u < UNITS.length; u++) {
+            final byte[] unit = UNITS[u];
+            for (int d = 0; d < SIZE; d++) {
+                masks[d] = 0;
+            }
+            for (int i = 0; i < SIZE; i++) {
+                int m = candidates[unit[i]];
+                while (m != 0) {
+                    final int bit = m & -m;
+                    m ^= bit;
+                    masks[LOWEST_DIGIT[bit] - 1] |= 1 << i;
+                }
+            }
+            int n = 0;
+            for (int d = 0; d < SIZE; d++) {
+                final int count = BIT_COUNT[masks[d]];
+                if (count >= 2 && count <= k) {
+                    indices[n++] = d;
+                }
+            }
+            for (int a = 0; a < n; a++) {
+                final int pa = masks[indices[a]];
+                for (int b = a + 1; b < n; b++) {
+                    final int pb = pa | masks[indices[b]];
+                    final int digitsAB = (1 << indices[a]) | (1 << indices[b]);
+                    if (k == 2) {
+                        if (BIT_COUNT[pb] == 2 && keepDigits(unit, pb, digitsAB)) {
+                            return true;
+                        }
+                        continue;
+                    }
+                    for (int c = b + 1; c < n; c++) {
+                        final int pc = pb | masks[indices[c]];
+                        if (BIT_COUNT[pc] == 3
+                                && keepDigits(unit, pc, digitsAB | (1 << indices[c]))) {
+                            return true;
+                        }
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * X-Wing (k = 2) and Swordfish (k = 3): if a digit is confined to the
+     * same k columns in k rows, it can be removed from those columns in all
+     * other rows, and the same with rows and columns swapped.
+     */
+    private boolean fish(int k) {
+        for (int d = 0; d < SIZE; d++) {
+            for (int base = 0; base <= SIZE; base += SIZE) {
+                int n = 0;
+                for (int line = 0; line < SIZE; line++) {
+                    final byte[] unit = UNITS[base + line];
+                    int m = 0;
+                    for (int i = 0; i < SIZE; i++) {
+                        if ((candidates[unit[i]] & (1 << d)) != 0) {
+                            m |= 1 << i;
+                        }
+                    }
+                    masks[line] = m;
+                    final int count = BIT_COUNT[m];
+                    if (count >= 2 && count <= k) {
+                        indices[n++] = line;
+                    }
+                }
+                for (int a = 0; a < n; a++) {
+                    for (int b = a + 1; b < n; b++) {
+                        final int mb = masks[indices[a]] | masks[indices[b]];
+                        final int linesAB = (1 << indices[a]) | (1 << indices[b]);
+                        if (k == 2) {
+                            if (BIT_COUNT[mb] == 2
+                                    && eliminateFish(d, base, linesAB, mb)) {
+                                return true;
+                            }
+                            continue;
+                        }
+                        for (int c = b + 1; c < n; c++) {
+                            final int mc = mb | masks[indices[c]];
+                            if (BIT_COUNT[mc] == 3 && eliminateFish(
+                                    d, base, linesAB | (1 << indices[c]), mc)) {
+                                return true;
+                            }
+                        }
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    private boolean eliminateFish(int d, int base, int lines, int crossLines) {
+        boolean changed = false;
+        for (int line = 0; line < SIZE; line++) {
+            if ((lines & (1 << line)) != 0) {
+                continue;
+            }
+            final byte[] unit = UNITS[base + line];
+            for (int i = 0; i < SIZE; i++) {
+                if ((crossLines & (1 << i)) != 0
+                        && (candidates[unit[i]] & (1 << d)) != 0) {
+                    eliminate(unit[i], d);
+                    changed = true;
+                }
+            }
+        }
+        if (changed && trace) {
+            for (int line = 0; line < SIZE; line++) {
+                final byte[] unit = UNITS[base + line];
+                for (int i = 0; i < SIZE; i++) {
+                    if ((lines & (1 << line)) != 0 && (crossLines & (1 << i)) != 0
+                            && (candidates[unit[i]] & (1 << d)) != 0) {
+                        mark(unit[i]);
+                    }
+                }
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * XY-Wing: a pivot with candidates xy sees one cell with xz and another
+     * with yz. Either way one of the pincers is z, so z can be removed from
+     * every cell that sees both pincers.
+     */
+    private boolean xyWing() {
+        for (int pivot = 0; pivot < CELLS; pivot++) {
+            final int mp = candidates[pivot];
+            if (BIT_COUNT[mp] != 2) {
+                continue;
+            }
+            final byte[] peers = PEERS[pivot];
+            for (int i = 0; i < peers.length; i++) {
+                final int a = peers[i];
+                final int ma = candidates[a];
+                if (BIT_COUNT[ma] != 2 || BIT_COUNT[ma & mp] != 1) {
+                    continue;
+                }
+                final int z = ma & ~mp;
+                final int mb = (mp & ~ma) | z;
+                for (int j = i + 1; j < peers.length; j++) {
+                    final int b = peers[j];
+                    if (candidates[b] != mb) {
+                        continue;
+                    }
+                    final int d = LOWEST_DIGIT[z] - 1;
+                    if (eliminate(d,
+                            boards[3 * d] & PEER_BOARDS[3 * a] & PEER_BOARDS[3 * b],
+                            boards[3 * d + 1] & PEER_BOARDS[3 * a + 1] & PEER_BOARDS[3 * b + 1],
+                            boards[3 * d + 2] & PEER_BOARDS[3 * a + 2] & PEER_BOARDS[3 * b + 2])) {
+                        mark(pivot);
+                        mark(a);
+                        mark(b);
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Removes the digits from the cells of the unit outside the subset.
+     */
+    private boolean eliminateDigits(byte[] unit, int subset, int digits) {
+        boolean changed = false;
+        for (int i = 0; i < SIZE; i++) {
+            if ((subset & (1 << i)) == 0) {
+                changed |= eliminateMask(unit[i], candidates[unit[i]] & digits);
+            }
+        }
+        if (changed) {
+            markSubset(unit, subset);
+        }
+        return changed;
+    }
+
+    /**
+     * Removes all but the digits from the cells of the unit in the subset.
+     */
+    private boolean keepDigits(byte[] unit, int subset, int digits) {
+        boolean changed = false;
+        for (int i = 0; i < SIZE; i++) {
+            if ((subset & (1 << i)) != 0) {
+                changed |= eliminateMask(unit[i], candidates[unit[i]] & ~digits);
+            }
+        }
+        if (changed) {
+            markSubset(unit, subset);
+        }
+        return changed;
+    }
+
+    private void markSubset(byte[] unit, int subset) {
+        for (int i = 0; i < SIZE; i++) {
+            if ((subset & (1 << i)) != 0) {
+                mark(unit[i]);
+            }
+        }
+    }
+
+    private boolean eliminateMask(int cell, int m) {
+        final boolean changed = m != 0;
+        while (m != 0) {
+            final int bit = m & -m;
+            m ^= bit;
+            eliminate(cell, LOWEST_DIGIT[bit] - 1);
+        }
+        return changed;
+    }
+
+    /**
+     * Removes the digit from all the cells of the bitboard.
+     */
+    private boolean eliminate(int d, int b0, int b1, int b2) {
+        if ((b0 | b1 | b2) == 0) {
+            return false;
+        }
+        while ((b0 | b1 | b2) != 0) {
+            final int cell = firstCell(b0, b1, b2);
+            eliminate(cell, d);
+            final int bit = 1 << (cell % BAND_CELLS);
+            switch (cell / BAND_CELLS) {
+                case 0:
+                    b0 &= ~bit;
+                    break;
+                case 1:
+                    b1 &= ~bit;
+                    break;
+                default:
+                    b2 &= ~bit;
+                    break;
+            }
+        }
+        return true;
+    }
+
+    private void eliminate(int cell, int d) {
+        if (trace) {
+            removed[removedCount++] = (short) (cell * 16 + d + 1);
+        }
+        remove(cell, d);
+    }
+
+    private void remove(int cell, int d) {
+        candidates[cell] &= ~(1 << d);
+        boards[3 * d + cell / BAND_CELLS] &= ~(1 << (cell % BAND_CELLS));
+    }
+
+    private void place(int cell, int d) {
+        int m = candidates[cell];
+        while (m != 0) {
+            final int bit = m & -m;
+            m ^= bit;
+            remove(cell, LOWEST_DIGIT[bit] - 1);
+        }
+        values[cell] = d + 1;
+        emptyCount--;
+        placedCell = cell;
+        final byte[] peers = PEERS[cell];
+        for (int i = 0; i < peers.length; i++) {
+            if ((candidates[peers[i]] & (1 << d)) != 0) {
+                remove(peers[i], d);
+            }
+        }
+    }
+
+    /**
+     * @return the first cell of a non-empty bitboard
+     */
+    private static int firstCell(int b0, int b1, int b2) {
+        int band = 0;
+        int b = b0;
+        if (b == 0) {
+            band = 1;
+            b = b1;
+            if (b == 0) {
+                band = 2;
+                b = b2;
+            }
+        }
+        int offset = 0;
+        while ((b & ALL) == 0) {
+            b >>>= SIZE;
+            offset += SIZE;
+        }
+        return band * BAND_CELLS + offset + LOWEST_DIGIT[b & ALL] - 1;
+    }
+
+    private static int bitCount(int b) {
+        return BIT_COUNT[b & ALL] + BIT_COUNT[(b >>> SIZE) & ALL]
+               + BIT_COUNT[b >>> (2 * SIZE)];
+    }
+}
@@ -0,0 +1,176 @@
+/**
+* Copyright (c) 2012-2014 Microsoft Mobile. All rights reserved.
+* Nokia and Nokia Connecting People are registered trademarks of Nokia Corporation. 
+* Oracle and Java are trademarks or registered trademarks of Oracle and/or its
+* affiliates. Other product and company names mentioned herein may be trademarks
+* or trade names of their respective owners. 
+* See LICENSE.TXT for license information.
+*/
+
+package com.nokia.example.sudokumaster;
+
+import java.util.Vector;
+import javax.microedition.lcdui.Font;
+import javax.microedition.lcdui.Graphics;
+import javax.microedition.lcdui.Image;
+import javax.microedition.lcdui.game.Sprite;
+
+/**
+ * Image that holds the digits, the letters used as digits on large boards
+ * and ':' drawn once with a font and a color. Numbers are copied from it
+ * with drawRegion(), which is much faster than rasterizing text on most
+ * devices and needs no String for each number drawn.
+ *
+ * Mutable images cannot be transparent, so the glyphs are drawn in white
+ * on black, and the brightness of each pixel becomes the alpha of the
+ * color. That keeps the edges of antialiased fonts smooth.
+ */
+public class GlyphAtlas {
+
+    // The symbols of BoardGeometry.symbol() and the separator of the clock.
+    private static final String GLYPHS = "0123456789ABCDEFGHIJKLMNOP:";
+    private static final Vector atlases = new Vector();
+    private final Font font;
+    private final int color;
+    private final int height;
+    private final Image image;
+    // Left edge of each glyph in the image, and the width of the image.
+    private final int[] offsets = new int[GLYPHS.length() + 1];
+
+    /**
+     * @return the atlas of the font and color, which is created on the
+     *         first call
+     */
+    public static synchronized GlyphAtlas get(Font font, int color) {
+        for (int i = 0; i < atlases.size(); i++) {
+            final GlyphAtlas atlas = (GlyphAtlas) atlases.elementAt(i);
+            if (atlas.color == color && atlas.font.getFace() == font.getFace()
+                    && atlas.font.getStyle() == font.getStyle()
+                    && atlas.font.getSize() == font.getSize()) {
+                return atlas;
+            }
+        }
+        final GlyphAtlas atlas = new GlyphAtlas(font, color);
+        atlases.addElement(atlas);
+        return atlas;
+    }
+
+    private GlyphAtlas(Font font, int color) {
+        this.font = font;
+        this.color = color;
+        height = font.getHeight();
+        int width = 0;
+        for (int i = 0; i < GLYPHS.length(); i++) {
+            offsets[i] = width;
+            width += font.charWidth(GLYPHS.charAt(i));
+        }
+        offsets[GLYPHS.length()] = width;
+        final Image glyphs = Image.createImage(width, height);
+        final Graphics g = glyphs.getGraphics();
+        g.setColor(0x00000000);
+        g.fillRect(0, 0, width, height);
+        g.setColor(0x00ffffff);
+        g.setFont(font);
+        for (int i = 0; i < GLYPHS.length(); i++) {
+            g.drawChar(GLYPHS.charAt(i), offsets[i], 0, Graphics.LEFT | Graphics.TOP);
+        }
+        final int[] rgb = new int[width * height];
+        glyphs.getRGB(rgb, 0, width, 0, 0, width, height);
+        for (int i = 0; i < rgb.length; i++) {
+            rgb[i] = (rgb[i] & 0x0000ff00) << 16 | color & 0x00ffffff;
+        }
+        image = Image.createRGBImage(rgb, width, height, true);
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public int charWidth(char c) {
+        final int i = GLYPHS.indexOf(c);
+        return i < 0 ? font.charWidth(c) : offsets[i + 1] - offsets[i];
+    }
+
+    /**
+     * @return the width of a number that is not negative
+     */
+    public int numberWidth(long n) {
+        int width = 0;
+        do {
+            width += charWidth(GLYPHS.charAt((int) (n % 10)));
+            n /= 10;
+        }
+        while (n > 0);
+        return width;
+    }
+
+    /**
+     * Draws a character. Characters the atlas does not hold are drawn
+     * with drawChar(), which leaves the color of the graphics set to the
+     * color of the atlas.
+     * @param g Graphics object
+     * @param c the character
+     * @param x x coordinate of the anchor point
+     * @param y y coordinate of the top edge
+     * @param anchor Graphics.LEFT, Graphics.HCENTER or Graphics.RIGHT,
+     *        combined with Graphics.TOP
+     */
+    public void drawChar(Graphics g, char c, int x, int y, int anchor) {
+        final int i = GLYPHS.indexOf(c);
+        if (i < 0) {
+            final Font old = g.getFont();
+            g.setFont(font);
+            g.setColor(color);
+            g.drawChar(c, x, y, anchor);
+            g.setFont(old);
+            return;
+        }
+        final int w = offsets[i + 1] - offsets[i];
+        g.drawRegion(image, offsets[i], 0, w, height, Sprite.TRANS_NONE,
+                     left(x, w, anchor), y, Graphics.LEFT | Graphics.TOP);
+    }
+
+    /**
+     * Draws the characters of a string.
+     * @see #drawChar(Graphics, char, int, int, int)
+     */
+    public void drawChars(Graphics g, String s, int x, int y, int anchor) {
+        int width = 0;
+        for (int i = 0; i < s.length(); i++) {
+            width += charWidth(s.charAt(i));
+        }
+        x = left(x, width, anchor);
+        for (int i = 0; i < s.length(); i++) {
+            final char c = s.charAt(i);
+            drawChar(g, c, x, y, Graphics.LEFT | Graphics.TOP);
+            x += charWidth(c);
+        }
+    }
+
+    /**
+     * Draws a number that is not negative.
+     * @see #drawChar(Graphics, char, int, int, int)
+     */
+    public void drawNumber(Graphics g, long n, int x, int y, int anchor) {
+        // The digits are drawn from the right, so no buffer is needed.
+        final int width = numberWidth(n);
+        x = left(x, width, anchor) + width;
+        do {
+            final char c = GLYPHS.charAt((int) (n % 10));
+            x -= charWidth(c);
+            drawChar(g, c, x, y, Graphics.LEFT | Graphics.TOP);
+            n /= 10;
+        }
+        while (n > 0);
+    }
+
+    private static int left(int x, int width, int anchor) {
+        if ((anchor & Graphics.HCENTER) != 0) {
+            return x - width / 2;
+        }
+        if ((anchor & Graphics.RIGHT) != 0) {
+            return x - width;
+        }
+        return x;
+    }
+}
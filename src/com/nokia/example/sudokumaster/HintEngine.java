@@ -0,0 +1,302 @@
+/**
+* Copyright (c) 2012-2014 Microsoft Mobile. All rights reserved.
+* Nokia and Nokia Connecting People are registered trademarks of Nokia Corporation. 
+* Oracle and Java are trademarks or registered trademarks of Oracle and/or its
+* affiliates. Other product and company names mentioned herein may be trademarks
+* or trade names of their respective owners. 
+* See LICENSE.TXT for license information.
+*/
+
+package com.nokia.example.sudokumaster;
+
+/**
+ * Finds the next logical step on the board for the "Hint" option: a number
+ * that can be placed or candidates that can be removed, with the technique
+ * that shows it and the cells involved. Numbers that differ from the
+ * solution are pointed out first.
+ *
+ * The search runs a little at a time from the render loop, so that it
+ * never holds up a frame. Every call to resume() does work until its time
+ * budget is spent, one stage at a time, and continues from there on the
+ * next call. The candidates are kept between searches in a DifficultyRater.
+ * Numbers the user has added since the last search are only placed into
+ * them, and the candidates removed by earlier hints stay removed, so a new
+ * search does not start from scratch unless numbers were cleared.
+ */
+public class HintEngine {
+
+    public static final int IDLE = 0;
+    public static final int SEARCHING = 1;
+    public static final int FOUND = 2;
+    public static final int NOT_FOUND = 3;
+    /** Technique of a hint that points out wrong numbers. */
+    public static final int MISTAKE = -1;
+    private static final int CELLS = 81;
+    private static final int STAGE_CHECK = 0;
+    private static final int STAGE_SYNC = 1;
+    private static final int STAGE_TECHNIQUES = 2;
+    private static final int PATTERN = 1;
+    private static final int TARGET = 2;
+    private final DifficultyRater rater = new DifficultyRater();
+    private final int[][] grid = new int[9][9];
+    // Snapshot of the board taken by start(), as in SudokuModel.
+    private final byte[] board = new byte[CELLS];
+    // Givens of the puzzle that the candidates belong to.
+    private final byte[] givens = new byte[CELLS];
+    // Solution of the puzzle, copied from the model.
+    private final byte[] solution = new byte[CELLS];
+    // True if the rater holds the candidates of an earlier search.
+    private boolean loaded = false;
+    // Cells where earlier hints placed a number the user has not set yet.
+    private final boolean[] derived = new boolean[CELLS];
+    private int state = IDLE;
+    private int stage;
+    // The hint found.
+    private final byte[] marks = new byte[CELLS];
+    private int technique;
+    private int placedCell = -1;
+    private int digits;
+
+    public HintEngine() {
+        rater.setTrace(true);
+    }
+
+    /**
+     * Starts looking for a hint. The board is copied, so it may change
+     * while the search runs, but then the hint is of no use and the search
+     * should be cancelled.
+     * @param model the game
+     */
+    public synchronized void start(SudokuModel model) {
+        if (model.getSize() != 9 || model.getVariant() != null) {
+            // The techniques of DifficultyRater know only classic 9x9 boards.
+            state = NOT_FOUND;
+            return;
+        }
+        boolean changed = false;
+        boolean same = true;
+        for (int col = 0; col < 9; col++) {
+            for (int row = 0; row < 9; row++) {
+                final int i = row * 9 + col;
+                int cell = model.getValue(col, row);
+                int given = 0;
+                if (model.isGiven(col, row)) {
+                    given = cell;
+                    cell |= SudokuModel.GIVEN;
+                }
+                changed |= board[i] != cell;
+                board[i] = (byte) cell;
+                same &= givens[i] == given;
+                givens[i] = (byte) given;
+                solution[i] = (byte) model.getSolution(col, row);
+            }
+        }
+        if (!same) {
+            // A new puzzle, so the candidates of the old one are of no use.
+            loaded = false;
+        }
+        if (state == FOUND && placedCell >= 0 && !changed) {
+            // The number of the last hint is still missing, so show it again.
+            return;
+        }
+        state = SEARCHING;
+        stage = STAGE_CHECK;
+    }
+
+    /**
+     * Stops the search. The candidates found so far are kept.
+     */
+    public synchronized void cancel() {
+        if (state == SEARCHING) {
+            state = IDLE;
+        }
+    }
+
+    /**
+     * Continues the search.
+     * @param budget time in milliseconds the call may take; the stage
+     *        running when the time runs out is finished first
+     * @return the state of the search
+     */
+    public synchronized int resume(long budget) {
+        final long deadline = System.currentTimeMillis() + budget;
+        while (state == SEARCHING) {
+            runStage();
+            if (System.currentTimeMillis() >= deadline) {
+                break;
+            }
+        }
+        return state;
+    }
+
+    public synchronized int getState() {
+        return state;
+    }
+
+    private void runStage() {
+        switch (stage) {
+            case STAGE_CHECK:
+                if (findMistakes()) {
+                    state = FOUND;
+                }
+                else {
+                    stage++;
+                }
+                break;
+            case STAGE_SYNC:
+                if (sync()) {
+                    stage++;
+                }
+                else {
+                    state = NOT_FOUND;
+                }
+                break;
+            default:
+                final int t = stage - STAGE_TECHNIQUES;
+                if (t >= DifficultyRater.TECHNIQUES) {
+                    state = NOT_FOUND;
+                }
+                else if (rater.apply(t)) {
+                    found(t);
+                    state = FOUND;
+                }
+                else {
+                    stage++;
+                }
+                break;
+        }
+    }
+
+    /**
+     * @return true if some numbers differ from the solution
+     */
+    private boolean findMistakes() {
+        clearHint(MISTAKE);
+        boolean found = false;
+        for (int i = 0; i < CELLS; i++) {
+            final int n = board[i] & SudokuModel.VALUE_MASK;
+            if (n > 0 && solution[i] > 0 && n != solution[i]) {
+                marks[i] = TARGET;
+                digits |= 1 << n;
+                found = true;
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Brings the candidates up to date with the board. New numbers are
+     * placed, but if a number was cleared or changed, the candidates are
+     * loaded again.
+     * @return false if the board has conflicting numbers
+     */
+    private boolean sync() {
+        for (int i = 0; loaded && i < CELLS; i++) {
+            final int n = board[i] & SudokuModel.VALUE_MASK;
+            final int v = rater.getValue(i);
+            if (n == v) {
+                derived[i] = false;
+            }
+            else if (n == 0 && derived[i]) {
+                // Placed by a hint but not by the user yet.
+            }
+            else if (v != 0 || !rater.placeValue(i, n)) {
+                loaded = false;
+            }
+        }
+        if (!loaded) {
+            for (int i = 0; i < CELLS; i++) {
+                grid[i / 9][i % 9] = board[i] & SudokuModel.VALUE_MASK;
+                derived[i] = false;
+            }
+            loaded = rater.load(grid);
+        }
+        return loaded;
+    }
+
+    private void found(int t) {
+        clearHint(t);
+        for (int i = 0; i < CELLS; i++) {
+            if (rater.isPatternCell(i)) {
+                marks[i] = PATTERN;
+            }
+        }
+        placedCell = rater.getPlacedCell();
+        if (placedCell >= 0) {
+            marks[placedCell] |= TARGET;
+            digits = 1 << rater.getValue(placedCell);
+            derived[placedCell] = true;
+        }
+        for (int r = 0; r < rater.getRemovedCount(); r++) {
+            final int removed = rater.getRemoved(r);
+            marks[removed / 16] |= TARGET;
+            digits |= 1 << (removed % 16);
+        }
+    }
+
+    private void clearHint(int t) {
+        technique = t;
+        placedCell = -1;
+        digits = 0;
+        for (int i = 0; i < CELLS; i++) {
+            marks[i] = 0;
+        }
+    }
+
+    /**
+     * @return the technique of the hint, one of the DifficultyRater
+     *         technique constants, or MISTAKE
+     */
+    public int getTechnique() {
+        return technique;
+    }
+
+    /**
+     * @return true if the cell is part of the pattern the hint is based on
+     */
+    public boolean isPattern(int col, int row) {
+        return (marks[row * 9 + col] & PATTERN) != 0;
+    }
+
+    /**
+     * @return true if the hint places a number into the cell, removes
+     *         candidates from it, or finds it wrong
+     */
+    public boolean isTarget(int col, int row) {
+        return (marks[row * 9 + col] & TARGET) != 0;
+    }
+
+    /**
+     * @return the cell where the hint places a number as row * 9 + col,
+     *         or -1 if the hint only removes candidates
+     */
+    public int getPlacedCell() {
+        return placedCell;
+    }
+
+    /**
+     * @return a short description of the hint, such as "Hidden single: 5"
+     *         or "X-Wing: not 3"
+     */
+    public String getText() {
+        final StringBuffer text = new StringBuffer(32);
+        if (technique == MISTAKE) {
+            text.append("Wrong number");
+        }
+        else {
+            text.append(DifficultyRater.TECHNIQUE_NAMES[technique]);
+        }
+        text.append(placedCell >= 0 || technique == MISTAKE ? ": " : ": not ");
+        boolean first = true;
+        for (int n = 1; n <= 9; n++) {
+            if ((digits & 1 << n) != 0) {
+                if (!first) {
+                    text.append(',');
+                }
+                text.append(n);
+                first = false;
+            }
+        }
+        return text.toString();
+    }
+}
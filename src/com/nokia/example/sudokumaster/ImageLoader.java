@@ -10,6 +10,7 @@
 package com.nokia.example.sudokumaster;
 
 import java.io.InputStream;
+import javax.microedition.lcdui.Graphics;
 import javax.microedition.lcdui.Image;
 
 /**
@@ -78,44 +79,31 @@ public class ImageLoader {
     }
 
     /**
-     * Scales the image to the desired width and height.
+     * Scales the image to the desired width and height by averaging the
+     * area each new pixel covers. The original is read a few rows at a
+     * time and the result is drawn into a mutable image, so no full copy
+     * of the pixels of either image is made.
      * @param original original image
      * @param newWidth new width for the image
      * @param newHeight new height for the image
      * @return scaled image
      */
-    public static Image scaleImage(Image original, int newWidth, int newHeight) {
-        int[] rawInput = new int[original.getHeight() * original.getWidth()];
-        original.getRGB(rawInput, 0, original.getWidth(), 0, 0,
-                        original.getWidth(), original.getHeight());
-
-        int[] rawOutput = new int[newWidth * newHeight];
-
-        // YD compensates for the x loop by subtracting the width back out
-        int YD = (original.getHeight() / newHeight) * original.getWidth() - original.getWidth();
-        int YR = original.getHeight() % newHeight;
-        int XD = original.getWidth() / newWidth;
-        int XR = original.getWidth() % newWidth;
-        int outOffset = 0;
-        int inOffset = 0;
-
-        for (int y = newHeight, YE = 0; y > 0; y--) {
-            for (int x = newWidth, XE = 0; x > 0; x--) {
-                rawOutput[outOffset++] = rawInput[inOffset];
-                inOffset += XD;
-                XE += XR;
-                if (XE >= newWidth) {
-                    XE -= newWidth;
-                    inOffset++;
+    public static Image scaleImage(final Image original, final int newWidth, int newHeight) {
+        final int width = original.getWidth();
+        final Image scaled = Image.createImage(newWidth, newHeight);
+        final Graphics g = scaled.getGraphics();
+        
+        new ImageScaler(width, original.getHeight(), newWidth, newHeight).scale(
+            new ImageScaler.Source() {
+                public void getRows(int[] rows, int y, int count) {
+                    original.getRGB(rows, 0, width, 0, y, width, count);
                 }
-            }
-            inOffset += YD;
-            YE += YR;
-            if (YE >= newHeight) {
-                YE -= newHeight;
-                inOffset += original.getWidth();
-            }
-        }
-        return Image.createRGBImage(rawOutput, newWidth, newHeight, false);
+            },
+            new ImageScaler.Sink() {
+                public void setRow(int[] row, int y) {
+                    g.drawRGB(row, 0, newWidth, 0, y, newWidth, 1, false);
+                }
+            });
+        return scaled;
     }
 }
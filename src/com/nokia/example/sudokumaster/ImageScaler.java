@@ -0,0 +1,262 @@
+/**
+* Copyright (c) 2012-2014 Microsoft Mobile. All rights reserved.
+* Nokia and Nokia Connecting People are registered trademarks of Nokia Corporation. 
+* Oracle and Java are trademarks or registered trademarks of Oracle and/or its
+* affiliates. Other product and company names mentioned herein may be trademarks
+* or trade names of their respective owners. 
+* See LICENSE.TXT for license information.
+*/
+
+package com.nokia.example.sudokumaster;
+
+/**
+ * Scaling of raw pixel data. Kept apart from ImageLoader so that it does
+ * not depend on the LCDUI classes.
+ *
+ * Every pixel of the scaled image is the average of the area of the
+ * original it covers, weighted by how much of each original pixel falls
+ * inside it. The weights are worked out once per column and row, in steps
+ * of 1/256, so that red and blue can be summed in one int. The original is
+ * read a band of rows at a time and the scaled image is written a row at a
+ * time, so only a few rows of either are held at once. The alpha channel
+ * is dropped.
+ */
+public class ImageScaler {
+
+    /** Number of rows of the original read at a time. */
+    private static final int BAND_ROWS = 8;
+    /** Sum of the weights of a scaled pixel. */
+    private static final int WEIGHT = 256;
+    private static final int RED_BLUE = 0x00ff00ff;
+    private static final int GREEN = 0x0000ff00;
+    private static final int OPAQUE = 0xff000000;
+    private final int width;
+    private final int height;
+    private final int newWidth;
+    // Pieces of the original each scaled column is made of: the number of
+    // pieces per column, and the column and the weight of each piece.
+    private final int[] xCounts;
+    private final int[] xSources;
+    private final int[] xWeights;
+    // Pieces of each row of the original, by scaled row.
+    private final int[] yCounts;
+    private final int[] yWeights;
+
+    /**
+     * @param width width of the original image
+     * @param height height of the original image
+     * @param newWidth new width for the image
+     * @param newHeight new height for the image
+     */
+    public ImageScaler(int width, int height, int newWidth, int newHeight) {
+        this.width = width;
+        this.height = height;
+        this.newWidth = newWidth;
+        
+        int[] sources = new int[width + newWidth];
+        int[] targets = new int[width + newWidth];
+        int[] weights = new int[width + newWidth];
+        int n = split(width, newWidth, sources, targets, weights);
+        xCounts = new int[newWidth];
+        xSources = new int[n];
+        xWeights = new int[n];
+        
+        for (int k = 0; k < n; k++) {
+            xCounts[targets[k]]++;
+            xSources[k] = sources[k];
+            xWeights[k] = weights[k];
+        }
+        
+        sources = new int[height + newHeight];
+        targets = new int[height + newHeight];
+        weights = new int[height + newHeight];
+        n = split(height, newHeight, sources, targets, weights);
+        yCounts = new int[height];
+        yWeights = new int[n];
+        
+        for (int k = 0; k < n; k++) {
+            yCounts[sources[k]]++;
+            yWeights[k] = weights[k];
+        }
+    }
+
+    /**
+     * Splits the scaled pixels of a line into pieces of the original ones.
+     * An original pixel is newSize units long and a scaled one size units,
+     * and the weight of a piece is its share of the scaled pixel. Pieces
+     * too small to get any weight are left out.
+     * @return the number of pieces
+     */
+    private static int split(int size, int newSize, int[] sources, int[] targets,
+                             int[] weights) {
+        int n = 0;
+        int i = 0;
+        // Units of the original pixel not used yet.
+        int left = newSize;
+        
+        for (int x = 0; x < newSize; x++) {
+            int used = 0;
+            int weighed = 0;
+            
+            while (used < size) {
+                final int take = Math.min(left, size - used);
+                used += take;
+                final int weight = (used * WEIGHT + size / 2) / size - weighed;
+                weighed += weight;
+                
+                if (weight > 0) {
+                    sources[n] = i;
+                    targets[n] = x;
+                    weights[n] = weight;
+                    n++;
+                }
+                
+                left -= take;
+                
+                if (left == 0) {
+                    i++;
+                    left = newSize;
+                }
+            }
+        }
+        
+        return n;
+    }
+
+    /**
+     * Scales ARGB pixel data held in arrays.
+     * @param rawInput pixels of the original image
+     * @param width width of the original image
+     * @param height height of the original image
+     * @param rawOutput destination for the pixels of the scaled image
+     * @param newWidth new width for the image
+     * @param newHeight new height for the image
+     */
+    public static void scale(final int[] rawInput, final int width, int height,
+                             final int[] rawOutput, final int newWidth, int newHeight) {
+        new ImageScaler(width, height, newWidth, newHeight).scale(new Source() {
+            public void getRows(int[] rows, int y, int count) {
+                System.arraycopy(rawInput, y * width, rows, 0, count * width);
+            }
+        }, new Sink() {
+            public void setRow(int[] row, int y) {
+                System.arraycopy(row, 0, rawOutput, y * newWidth, newWidth);
+            }
+        });
+    }
+
+    /**
+     * Scales the image, reading the original from the source and writing
+     * the scaled rows to the sink from top to bottom.
+     */
+    public void scale(Source source, Sink sink) {
+        final int bandRows = Math.min(BAND_ROWS, height);
+        final int[] band = new int[width * bandRows];
+        // The current row of the original scaled horizontally.
+        final int[] row = new int[newWidth];
+        // Sums of the channels of the current scaled row.
+        final int[] redBlues = new int[newWidth];
+        final int[] greens = new int[newWidth];
+        final int[] newRow = new int[newWidth];
+        // Weight the current scaled row has got so far.
+        int rowWeight = 0;
+        int y = 0;
+        int k = 0;
+        
+        for (int bandTop = 0; bandTop < height; bandTop += bandRows) {
+            final int rows = Math.min(bandRows, height - bandTop);
+            source.getRows(band, bandTop, rows);
+            
+            for (int r = 0; r < rows; r++) {
+                scaleRow(band, r * width, row);
+                
+                for (int end = k + yCounts[bandTop + r]; k < end; k++) {
+                    final int weight = yWeights[k];
+                    
+                    if (weight == WEIGHT) {
+                        // The scaled row lies within this row of the original.
+                        sink.setRow(row, y++);
+                        continue;
+                    }
+                    
+                    for (int x = 0; x < newWidth; x++) {
+                        final int p = row[x];
+                        redBlues[x] += (p & RED_BLUE) * weight;
+                        greens[x] += (p & GREEN) * weight;
+                    }
+                    
+                    rowWeight += weight;
+                    
+                    if (rowWeight == WEIGHT) {
+                        for (int x = 0; x < newWidth; x++) {
+                            newRow[x] = OPAQUE
+                                | (redBlues[x] + 0x00800080) >>> 8 & RED_BLUE
+                                | (greens[x] + 0x00008000) >>> 8 & GREEN;
+                            redBlues[x] = 0;
+                            greens[x] = 0;
+                        }
+                        
+                        sink.setRow(newRow, y++);
+                        rowWeight = 0;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Scales a row of the original horizontally.
+     * @param in pixels of the original
+     * @param offset index of the first pixel of the row
+     * @param out destination for the newWidth pixels of the row
+     */
+    private void scaleRow(int[] in, int offset, int[] out) {
+        int k = 0;
+        
+        for (int x = 0; x < newWidth; x++) {
+            final int count = xCounts[x];
+            
+            if (count == 1) {
+                // The scaled pixel lies within this pixel of the original.
+                out[x] = in[offset + xSources[k++]] | OPAQUE;
+                continue;
+            }
+            
+            int redBlue = 0x00800080;
+            int green = 0x00008000;
+            
+            for (int end = k + count; k < end; k++) {
+                final int p = in[offset + xSources[k]];
+                final int weight = xWeights[k];
+                redBlue += (p & RED_BLUE) * weight;
+                green += (p & GREEN) * weight;
+            }
+            
+            out[x] = OPAQUE | redBlue >>> 8 & RED_BLUE | green >>> 8 & GREEN;
+        }
+    }
+
+    /**
+     * Supplies the pixels of the original image.
+     */
+    public static interface Source {
+        /**
+         * Copies rows of the original into an array, one after the other.
+         * @param rows destination, width pixels per row
+         * @param y first row to copy
+         * @param count number of rows to copy
+         */
+        void getRows(int[] rows, int y, int count);
+    }
+
+    /**
+     * Receives the pixels of the scaled image.
+     */
+    public static interface Sink {
+        /**
+         * @param row newWidth pixels of the row, valid only during the call
+         * @param y index of the row
+         */
+        void setRow(int[] row, int y);
+    }
+}
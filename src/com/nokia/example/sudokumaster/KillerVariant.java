@@ -0,0 +1,259 @@
+/**
+* Copyright (c) 2012-2014 Microsoft Mobile. All rights reserved.
+* Nokia and Nokia Connecting People are registered trademarks of Nokia Corporation. 
+* Oracle and Java are trademarks or registered trademarks of Oracle and/or its
+* affiliates. Other product and company names mentioned herein may be trademarks
+* or trade names of their respective owners. 
+* See LICENSE.TXT for license information.
+*/
+
+package com.nokia.example.sudokumaster;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Random;
+
+/**
+ * Killer sudoku: the board is divided into cages, each with the sum of its
+ * digits given, and no digit repeats within a cage. The cages are the
+ * units of the variant.
+ *
+ * The digits a cage allows depend only on the digits already in it, so
+ * the result is cached for every cage until the cage changes. The cache
+ * makes the class unsafe to share between threads.
+ */
+public class KillerVariant
+    extends Variant {
+
+    /** Sum of the digits of every cage. */
+    private final int[] sums;
+    private final int[] cachedUsed;
+    private final int[] cachedAllowed;
+
+    /**
+     * @param geometry the board
+     * @param cages cells of every cage; every cell is in exactly one cage
+     * @param sums sum of the digits of every cage
+     */
+    public KillerVariant(BoardGeometry geometry, short[][] cages, int[] sums) {
+        super(geometry);
+        setUnits(cages);
+        this.sums = sums;
+        cachedUsed = new int[cages.length];
+        cachedAllowed = new int[cages.length];
+        for (int u = 0; u < cages.length; u++) {
+            cachedUsed[u] = -1;
+        }
+    }
+
+    /**
+     * Divides a solution grid into random cages of connected cells with
+     * different digits, from one cell up to one more than the order.
+     * @param grid the solution as grid[row][col]
+     * @param random source of randomness
+     * @return the variant with the cages and their sums
+     */
+    public static KillerVariant fromSolution(int[][] grid, Random random) {
+        final BoardGeometry geometry = BoardGeometry.forSize(grid.length);
+        final int size = geometry.size;
+        final int cells = geometry.cells;
+        final int[] cageOf = new int[cells];
+        final int[] order = new int[cells];
+        for (int cell = 0; cell < cells; cell++) {
+            cageOf[cell] = -1;
+            order[cell] = cell;
+        }
+        SudokuGenerator.shuffle(order, random);
+        final short[][] cages = new short[cells][];
+        final int[] sums = new int[cells];
+        final short[] cage = new short[geometry.order + 1];
+        final short[] neighbours = new short[4 * cage.length];
+        int count = 0;
+        for (int i = 0; i < cells; i++) {
+            if (cageOf[order[i]] >= 0) {
+                continue;
+            }
+            final int target = 2 + random.nextInt(geometry.order);
+            int length = 0;
+            int digits = 0;
+            int cell = order[i];
+            while (cell >= 0) {
+                cage[length++] = (short) cell;
+                cageOf[cell] = count;
+                digits |= 1 << grid[cell / size][cell % size];
+                sums[count] += grid[cell / size][cell % size];
+                // Grow the cage into a random free neighbour with a new digit.
+                int n = 0;
+                for (int c = 0; length < target && c < length; c++) {
+                    final int row = cage[c] / size;
+                    final int col = cage[c] % size;
+                    n = addNeighbour(grid, cageOf, digits, row - 1, col, neighbours, n);
+                    n = addNeighbour(grid, cageOf, digits, row + 1, col, neighbours, n);
+                    n = addNeighbour(grid, cageOf, digits, row, col - 1, neighbours, n);
+                    n = addNeighbour(grid, cageOf, digits, row, col + 1, neighbours, n);
+                }
+                cell = n > 0 ? neighbours[random.nextInt(n)] : -1;
+            }
+            cages[count] = new short[length];
+            System.arraycopy(cage, 0, cages[count], 0, length);
+            count++;
+        }
+        final short[][] result = new short[count][];
+        final int[] resultSums = new int[count];
+        System.arraycopy(cages, 0, result, 0, count);
+        System.arraycopy(sums, 0, resultSums, 0, count);
+        return new KillerVariant(geometry, result, resultSums);
+    }
+
+    private static int addNeighbour(int[][] grid, int[] cageOf, int digits, int row, int col,
+                                    short[] neighbours, int n) {
+        final int size = grid.length;
+        if (row >= 0 && row < size && col >= 0 && col < size
+                && cageOf[row * size + col] < 0 && (digits & 1 << grid[row][col]) == 0) {
+            neighbours[n++] = (short) (row * size + col);
+        }
+        return n;
+    }
+
+    public int getType() {
+        return KILLER;
+    }
+
+    /**
+     * @return the sum of the digits of the cage
+     */
+    public int getSum(int cage) {
+        return sums[cage];
+    }
+
+    /**
+     * Allows the unused digits that some set of different unused digits
+     * can complete to the sum of the cage. A digit d fits if the rest of
+     * the sum lies between the smallest and the largest sum of the other
+     * empty cells, taking their digits from the unused ones other than d.
+     * @see com.nokia.example.sudokumaster.Variant#allowed(int, int)
+     */
+    public int allowed(int unit, int used) {
+        if (cachedUsed[unit] == used) {
+            return cachedAllowed[unit];
+        }
+        final int size = geometry.size;
+        final int free = ~used & geometry.all;
+        final int others = units[unit].length - BoardGeometry.bitCount(used) - 1;
+        int rest = sums[unit];
+        for (int d = 1; d <= size; d++) {
+            if ((used & 1 << d) != 0) {
+                rest -= d;
+            }
+        }
+        int allowed = 0;
+        for (int d = 1; others >= 0 && d <= size; d++) {
+            if ((free & 1 << d) == 0) {
+                continue;
+            }
+            int min = 0;
+            int max = 0;
+            int taken = 0;
+            for (int low = 1; taken < others && low <= size; low++) {
+                if (low != d && (free & 1 << low) != 0) {
+                    min += low;
+                    taken++;
+                }
+            }
+            taken = 0;
+            for (int high = size; taken < others && high >= 1; high--) {
+                if (high != d && (free & 1 << high) != 0) {
+                    max += high;
+                    taken++;
+                }
+            }
+            if (taken == others && rest - d >= min && rest - d <= max) {
+                allowed |= 1 << d;
+            }
+        }
+        cachedUsed[unit] = used;
+        cachedAllowed[unit] = allowed;
+        return allowed;
+    }
+
+    public int getBorders(int cell) {
+        final int size = geometry.size;
+        final int cage = cellUnits[cell][0];
+        final int row = cell / size;
+        final int col = cell % size;
+        int borders = 0;
+        if (row == 0 || cellUnits[cell - size][0] != cage) {
+            borders |= TOP;
+        }
+        if (col == size - 1 || cellUnits[cell + 1][0] != cage) {
+            borders |= RIGHT;
+        }
+        if (row == size - 1 || cellUnits[cell + size][0] != cage) {
+            borders |= BOTTOM;
+        }
+        if (col == 0 || cellUnits[cell - 1][0] != cage) {
+            borders |= LEFT;
+        }
+        return borders;
+    }
+
+    /**
+     * The sum of a cage is shown in its first cell in reading order.
+     * @see com.nokia.example.sudokumaster.Variant#getLabel(int)
+     */
+    public int getLabel(int cell) {
+        final short[] cage = units[cellUnits[cell][0]];
+        for (int i = 0; i < cage.length; i++) {
+            if (cage[i] < cell) {
+                return 0;
+            }
+        }
+        return sums[cellUnits[cell][0]];
+    }
+
+    /**
+     * Writes the number of cages, then the sum, the size and the cells of
+     * every cage.
+     * @see com.nokia.example.sudokumaster.Variant#write(java.io.DataOutputStream)
+     */
+    public void write(DataOutputStream dout) throws IOException {
+        super.write(dout);
+        dout.writeShort(units.length);
+        for (int u = 0; u < units.length; u++) {
+            dout.writeShort(sums[u]);
+            dout.writeByte(units[u].length);
+            for (int i = 0; i < units[u].length; i++) {
+                dout.writeShort(units[u][i]);
+            }
+        }
+    }
+
+    static KillerVariant readCages(DataInputStream din, BoardGeometry geometry) throws IOException {
+        final int count = din.readShort();
+        if (count < 1 || count > geometry.cells) {
+            throw new IOException("Bad cage count");
+        }
+        final short[][] cages = new short[count][];
+        final int[] sums = new int[count];
+        final boolean[] seen = new boolean[geometry.cells];
+        int cells = 0;
+        for (int u = 0; u < count; u++) {
+            sums[u] = din.readShort();
+            cages[u] = new short[din.readByte()];
+            for (int i = 0; i < cages[u].length; i++) {
+                final int cell = din.readShort();
+                if (cell < 0 || cell >= geometry.cells || seen[cell]) {
+                    throw new IOException("Bad cage");
+                }
+                seen[cell] = true;
+                cages[u][i] = (short) cell;
+                cells++;
+            }
+        }
+        if (cells != geometry.cells) {
+            throw new IOException("Bad cages");
+        }
+        return new KillerVariant(geometry, cages, sums);
+    }
+}
@@ -9,25 +9,97 @@
 
 package com.nokia.example.sudokumaster;
 
-import java.util.Enumeration;
 import java.util.Vector;
 import javax.microedition.lcdui.Graphics;
+import javax.microedition.lcdui.Image;
 
 /**
- * View that groups all the other views.
+ * View that groups all the other views. Only the part of the screen where
+ * views have changed is repainted: the areas the views report are merged
+ * into one rectangle, which is cleared and clipped to, and only the views
+ * that meet it are painted again. The views are walked by index, so that
+ * drawing a frame allocates nothing.
+ *
+ * Views that seldom change, such as the title and the buttons, can be added
+ * as static views. They are drawn with the background into an off-screen
+ * layer, which is redrawn only where a static view has changed or when the
+ * size of the layout changes. A frame copies the layer to the screen and
+ * paints the other views on top of it. If there is no memory for the
+ * layer, static views are painted straight to the screen instead.
  */
 public class Layout extends View {
 
     private static final int BACKGROUND_COLOR = 0x00622415;
     private Vector views;
+    private Vector staticViews;
+    // Static views and the background, or null if not created yet.
+    private Image layer;
+    private Graphics layerGraphics;
+    // True if the layer could not be created.
+    private boolean noLayer;
+    // Area of the layer to redraw: left, top, right and bottom.
+    private final int[] layerArea = new int[4];
+    private Listener listener;
+    // Area repainted by the last render: left, top, right and bottom.
+    private final int[] area = new int[4];
+    // Views painted by the last render.
+    private int renderedViews;
 
     public Layout(int width, int height) {
         super(0, 0, width, height);
         views = new Vector();
+        staticViews = new Vector();
     }
 
+    /**
+     * Adds a view that is painted on every frame it has changed in. Views
+     * are painted above the static views.
+     */
     public void addView(View view) {
         views.addElement(view);
+        view.setParent(this);
+    }
+
+    /**
+     * Adds a view that is kept in the off-screen layer. It should not
+     * overlap the views added with addView() unless it is below them.
+     */
+    public void addStaticView(View view) {
+        staticViews.addElement(view);
+        view.setParent(this);
+    }
+
+    private int viewCount() {
+        return staticViews.size() + views.size();
+    }
+
+    /**
+     * @return the static views first, then the others
+     */
+    private View viewAt(int i) {
+        final int staticCount = staticViews.size();
+        return (View) (i < staticCount ? staticViews.elementAt(i)
+                                       : views.elementAt(i - staticCount));
+    }
+
+    public void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    protected void onInvalidated() {
+        super.onInvalidated();
+        if (listener != null) {
+            listener.onInvalidated();
+        }
+    }
+
+    public boolean isAnimating() {
+        for (int i = 0; i < viewCount(); i++) {
+            if (viewAt(i).isAnimating()) {
+                return true;
+            }
+        }
+        return false;
     }
 
     /**
@@ -35,19 +107,142 @@ public class Layout extends View {
      * @see com.nokia.example.sudokumaster.View#update()
      */
     public void update() {
-        for (Enumeration e = views.elements(); e.hasMoreElements();) {
-            ((View) e.nextElement()).update();
+        for (int i = 0; i < viewCount(); i++) {
+            viewAt(i).update();
         }
     }
 
+    /**
+     * Repaints the changed part of the layout, which can then be read with
+     * getRenderedLeft() and the like. The static views are brought up to
+     * date in the layer first, and the other views are painted in the order
+     * they were added.
+     * @param g Graphics object
+     */
+    public boolean render(Graphics g) {
+        renderedViews = 0;
+        area[2] = area[0];
+        layerArea[2] = layerArea[0];
+        takeDirtyArea(area);
+        
+        for (int i = 0; i < staticViews.size(); i++) {
+            ((View) staticViews.elementAt(i)).takeDirtyArea(layerArea);
+        }
+        
+        for (int i = 0; i < views.size(); i++) {
+            ((View) views.elementAt(i)).takeDirtyArea(area);
+        }
+        
+        if (!noLayer && (layer == null
+                         || layer.getWidth() != width || layer.getHeight() != height)) {
+            createLayer();
+        }
+        
+        if (layer != null) {
+            renderLayer(g);
+        }
+        
+        addArea(area, layerArea[0], layerArea[1], layerArea[2], layerArea[3]);
+        
+        area[0] = Math.max(area[0], left);
+        area[1] = Math.max(area[1], top);
+        area[2] = Math.min(area[2], right);
+        area[3] = Math.min(area[3], bottom);
+        
+        if (area[2] <= area[0] || area[3] <= area[1]) {
+            area[2] = area[0];
+            area[3] = area[1];
+            return false;
+        }
+        
+        g.setClip(area[0], area[1], area[2] - area[0], area[3] - area[1]);
+        final boolean rendered = super.render(g);
+        g.setClip(left, top, width, height);
+        return rendered;
+    }
+
+    /**
+     * @return the number of views painted by the last render
+     */
+    public int getRenderedViews() {
+        return renderedViews;
+    }
+
+    public int getRenderedLeft() {
+        return area[0];
+    }
+
+    public int getRenderedTop() {
+        return area[1];
+    }
+
+    public int getRenderedWidth() {
+        return area[2] - area[0];
+    }
+
+    public int getRenderedHeight() {
+        return area[3] - area[1];
+    }
+
     /**
      * Paint the layout.
      * @see com.nokia.example.sudokumaster.View#paint(javax.microedition.lcdui.Graphics)
      * @param g Graphics object
      */
     protected void paint(Graphics g) {
-        renderBackground(g);
-        renderViews(g);
+        if (layer != null) {
+            g.drawImage(layer, left, top, Graphics.LEFT | Graphics.TOP);
+        }
+        else {
+            renderBackground(g);
+            renderViews(g, staticViews);
+        }
+        
+        renderViews(g, views);
+    }
+
+    /**
+     * Creates the layer for the current size, to be drawn in full.
+     */
+    private void createLayer() {
+        layer = null;
+        layerGraphics = null;
+        
+        try {
+            layer = Image.createImage(width, height);
+            layerGraphics = layer.getGraphics();
+            layerGraphics.translate(-left, -top);
+        }
+        catch (OutOfMemoryError e) {
+            // Paint the static views straight to the screen.
+            layer = null;
+            noLayer = true;
+        }
+        
+        layerArea[0] = left;
+        layerArea[1] = top;
+        layerArea[2] = right;
+        layerArea[3] = bottom;
+    }
+
+    /**
+     * Redraws the changed part of the layer.
+     * @param g the graphics of the screen, whose font the views use
+     */
+    private void renderLayer(Graphics g) {
+        final int l = Math.max(layerArea[0], left);
+        final int t = Math.max(layerArea[1], top);
+        final int r = Math.min(layerArea[2], right);
+        final int b = Math.min(layerArea[3], bottom);
+        
+        if (r <= l || b <= t) {
+            return;
+        }
+        
+        layerGraphics.setFont(g.getFont());
+        layerGraphics.setClip(l, t, r - l, b - t);
+        renderBackground(layerGraphics);
+        renderViews(layerGraphics, staticViews);
     }
 
     public boolean needsRendering() {
@@ -55,8 +250,8 @@ public class Layout extends View {
     }
 
     private boolean anyViewNeedsRendering() {
-        for (Enumeration e = views.elements(); e.hasMoreElements();) {
-            if (((View) e.nextElement()).needsRendering()) {
+        for (int i = 0; i < viewCount(); i++) {
+            if (viewAt(i).needsRendering()) {
                 return true;
             }
         }
@@ -65,12 +260,21 @@ public class Layout extends View {
 
     private void renderBackground(Graphics g) {
         g.setColor(BACKGROUND_COLOR);
-        g.fillRect(left, top, width, height);
+        g.fillRect(g.getClipX(), g.getClipY(), g.getClipWidth(), g.getClipHeight());
     }
 
-    private void renderViews(Graphics g) {
-        for (Enumeration e = views.elements(); e.hasMoreElements();) {
-            ((View) e.nextElement()).render(g);
+    private void renderViews(Graphics g, Vector list) {
+        for (int i = 0; i < list.size(); i++) {
+            if (((View) list.elementAt(i)).render(g)) {
+                renderedViews++;
+            }
         }
     }
+
+    public static interface Listener {
+        /**
+         * Called when the layout or one of its views has been invalidated.
+         */
+        void onInvalidated();
+    }
 }
@@ -0,0 +1,208 @@
+/**
+* Copyright (c) 2012-2014 Microsoft Mobile. All rights reserved.
+* Nokia and Nokia Connecting People are registered trademarks of Nokia Corporation. 
+* Oracle and Java are trademarks or registered trademarks of Oracle and/or its
+* affiliates. Other product and company names mentioned herein may be trademarks
+* or trade names of their respective owners. 
+* See LICENSE.TXT for license information.
+*/
+
+package com.nokia.example.sudokumaster;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * History of moves for undo and redo. Moves are packed into records
+ * holding the cell index and the old and new values, and kept in a ring
+ * buffer of fixed capacity, so that recording a move allocates nothing and
+ * the oldest moves are dropped when the buffer is full.
+ *
+ * Boards up to 9x9 keep 16-bit records. Larger boards need the journal to
+ * be made wide, which keeps int records with room for the 625 cells and
+ * 25 digits of the largest board. Records are passed in and out in the
+ * wide form either way.
+ */
+public class MoveJournal {
+
+    /** Number of moves that can be undone. */
+    public static final int CAPACITY = 256;
+    /** First short of a wide journal; narrow ones start with the undo count. */
+    private static final int WIDE_FORMAT_MARK = -1;
+    private final short[] records = new short[CAPACITY];
+    // Records of a wide journal, null until the journal is made wide.
+    private int[] wideRecords;
+    private boolean wide = false;
+    private int first = 0;
+    private int undoCount = 0;
+    private int redoCount = 0;
+
+    /**
+     * Packs a move into a record.
+     * @param cell index of the cell, 0-1023
+     * @param oldValue value before the move, 0-31
+     * @param newValue value after the move, 0-31
+     * @return the record
+     */
+    public static int pack(int cell, int oldValue, int newValue) {
+        return cell << 10 | oldValue << 5 | newValue;
+    }
+
+    public static int getCell(int record) {
+        return record >> 10 & 0x3ff;
+    }
+
+    public static int getOldValue(int record) {
+        return record >> 5 & 0x1f;
+    }
+
+    public static int getNewValue(int record) {
+        return record & 0x1f;
+    }
+
+    /**
+     * @return the record in 16 bits, or -1 if it does not fit
+     */
+    private static int narrow(int record) {
+        final int cell = getCell(record);
+        final int oldValue = getOldValue(record);
+        final int newValue = getNewValue(record);
+        if (cell > 0x7f || oldValue > 0xf || newValue > 0xf) {
+            return -1;
+        }
+        return cell << 8 | oldValue << 4 | newValue;
+    }
+
+    private static int widen(int record) {
+        return pack(record >> 8 & 0x7f, record >> 4 & 0xf, record & 0xf);
+    }
+
+    /**
+     * Chooses between 16-bit and int records. The moves are cleared.
+     * @param wide true for boards larger than 9x9
+     */
+    public void setWide(boolean wide) {
+        clear();
+        this.wide = wide;
+        if (wide && wideRecords == null) {
+            wideRecords = new int[CAPACITY];
+        }
+    }
+
+    private void store(int i, int record) {
+        if (wide) {
+            wideRecords[i] = record;
+        }
+        else {
+            records[i] = (short) narrow(record);
+        }
+    }
+
+    private int load(int i) {
+        return wide ? wideRecords[i] : widen(records[i]);
+    }
+
+    /**
+     * Records a move. Moves that were undone can not be redone after this.
+     */
+    public void record(int cell, int oldValue, int newValue) {
+        store((first + undoCount) % CAPACITY, pack(cell, oldValue, newValue));
+        if (undoCount < CAPACITY) {
+            undoCount++;
+        }
+        else {
+            first = (first + 1) % CAPACITY;
+        }
+        redoCount = 0;
+    }
+
+    public boolean canUndo() {
+        return undoCount > 0;
+    }
+
+    public boolean canRedo() {
+        return redoCount > 0;
+    }
+
+    /**
+     * Steps back one move.
+     * @return the record of the move to revert, or -1 if there is none
+     */
+    public int undo() {
+        if (undoCount == 0) {
+            return -1;
+        }
+        undoCount--;
+        redoCount++;
+        return load((first + undoCount) % CAPACITY);
+    }
+
+    /**
+     * Steps forward one move.
+     * @return the record of the move to apply again, or -1 if there is none
+     */
+    public int redo() {
+        if (redoCount == 0) {
+            return -1;
+        }
+        final int record = load((first + undoCount) % CAPACITY);
+        undoCount++;
+        redoCount--;
+        return record;
+    }
+
+    public void clear() {
+        first = 0;
+        undoCount = 0;
+        redoCount = 0;
+    }
+
+    /**
+     * Writes the moves that can be undone and redone, oldest first. A
+     * narrow journal is written as older versions wrote it; a wide one
+     * starts with a mark and has int records.
+     * @param dout destination stream
+     */
+    public void write(DataOutputStream dout) throws IOException {
+        if (wide) {
+            dout.writeShort(WIDE_FORMAT_MARK);
+        }
+        dout.writeShort(undoCount);
+        dout.writeShort(redoCount);
+        for (int i = 0; i < undoCount + redoCount; i++) {
+            final int index = (first + i) % CAPACITY;
+            if (wide) {
+                dout.writeInt(wideRecords[index]);
+            }
+            else {
+                dout.writeShort(records[index]);
+            }
+        }
+    }
+
+    /**
+     * Reads the moves written by write() in either form. The journal keeps
+     * its own form, so setWide() should be called for the board first.
+     * @param din source stream
+     */
+    public void read(DataInputStream din) throws IOException {
+        clear();
+        final int mark = din.readShort();
+        final boolean wideFormat = mark == WIDE_FORMAT_MARK;
+        final int undo = wideFormat ? din.readShort() : mark;
+        final int redo = din.readShort();
+        if (undo < 0 || redo < 0 || undo + redo > CAPACITY) {
+            throw new IOException("Bad move journal");
+        }
+        for (int i = 0; i < undo + redo; i++) {
+            final int record = wideFormat ? din.readInt() : widen(din.readShort());
+            if (!wide && narrow(record) < 0) {
+                throw new IOException("Bad move journal");
+            }
+            store(i, record);
+        }
+        undoCount = undo;
+        redoCount = redo;
+    }
+}
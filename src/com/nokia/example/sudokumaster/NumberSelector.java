@@ -16,7 +16,8 @@ import javax.microedition.lcdui.game.TiledLayer;
 
 /**
  * Implements the number selection, with which user can input numbers on the
- * sudoku board.
+ * sudoku board. There is a button for every digit of the board, laid out
+ * like the cells of a block, and a button for clearing the cell below them.
  */
 public class NumberSelector
     extends View {
@@ -31,6 +32,8 @@ public class NumberSelector
     private final int cButtonWidth, cButtonHeight;
     private int keyPressed;
     private volatile boolean refreshButtons = true;
+    private int order = 3;
+    private int size = 9;
 
     public NumberSelector(int width, int height, Image buttonImage,
             Image largeButtonImage, Listener listener) {
@@ -74,12 +77,40 @@ public class NumberSelector
         refreshButtonPositions();
     }
 
+    /**
+     * Sets the order of the board, see BoardGeometry, and resizes the
+     * selector to fit its digits.
+     */
+    public void setOrder(int order) {
+        if (this.order == order) {
+            return;
+        }
+        this.order = order;
+        size = order * order;
+        numberButtons = null;
+        setKeyPressed(0);
+        setSize(Math.max(numberButtonWidth * order, cButtonWidth),
+                numberButtonHeight * order + cButtonHeight);
+    }
+
+    /**
+     * @return the key in the middle of the digits
+     */
+    public int getCenterKey() {
+        return size / 2 + 1;
+    }
+
+    private int buttonsLeft() {
+        return left + (width - numberButtonWidth * order) / 2;
+    }
+
     private void refreshButtonPositions() {
         if (numberButtons != null) {
-            numberButtons.setPosition(left, top);
+            numberButtons.setPosition(buttonsLeft(), top);
         }
         if (cButton != null) {
-            cButton.setPosition(left, top + numberButtonHeight * 3);
+            cButton.setPosition(left + (width - cButtonWidth) / 2,
+                                top + numberButtonHeight * order);
         }
     }
 
@@ -90,10 +121,11 @@ public class NumberSelector
      */
     protected void paint(Graphics g) {
         if (numberButtons == null || cButton == null) {
-            numberButtons = new TiledLayer(3, 3, buttonImage, numberButtonWidth,
+            numberButtons = new TiledLayer(order, order, buttonImage, numberButtonWidth,
                                            numberButtonHeight);
             cButton = new Sprite(largeButtonImage, cButtonWidth, cButtonHeight);
             refreshButtonPositions();
+            refreshButtons = true;
         }
         if (refreshButtons) {
             refreshButtons();
@@ -104,34 +136,34 @@ public class NumberSelector
     }
 
     private void paintNumbers(Graphics g) {
-        g.setColor(TEXT_COLOR);
-        final int xOffset = left + numberButtonWidth / 2;
-        final int yOffset = top + numberButtonHeight / 2 - g.getFont().getHeight() / 2;
+        final GlyphAtlas atlas = GlyphAtlas.get(g.getFont(), TEXT_COLOR);
+        final int xOffset = buttonsLeft() + numberButtonWidth / 2;
+        final int yOffset = top + numberButtonHeight / 2 - atlas.getHeight() / 2;
         int x, y, n;
-        for (int row = 0; row < 3; row++) {
+        for (int row = 0; row < order; row++) {
             y = yOffset + row * numberButtonHeight;
-            for (int col = 0; col < 3; col++) {
+            for (int col = 0; col < order; col++) {
                 x = xOffset + col * numberButtonWidth;
-                n = row * 3 + col + 1;
-                g.drawString(String.valueOf(n), x, y,
-                             Graphics.HCENTER | Graphics.TOP);
+                n = row * order + col + 1;
+                atlas.drawChar(g, BoardGeometry.symbol(n), x, y,
+                               Graphics.HCENTER | Graphics.TOP);
             }
         }
         x = cButton.getX() + cButton.getWidth() / 2;
-        y = cButton.getY() + cButton.getHeight() / 2 - g.getFont().getHeight() / 2;
-        g.drawString("C", x, y, Graphics.HCENTER | Graphics.TOP);
+        y = cButton.getY() + cButton.getHeight() / 2 - atlas.getHeight() / 2;
+        atlas.drawChar(g, 'C', x, y, Graphics.HCENTER | Graphics.TOP);
     }
 
     private void refreshButtons() {
         refreshButtons = false;
-        numberButtons.fillCells(0, 0, 3, 3, 1);
+        numberButtons.fillCells(0, 0, order, order, 1);
         cButton.setFrame(0);
-        if (keyPressed > 9) {
+        if (keyPressed > size) {
             cButton.setFrame(1);
         }
         else if (keyPressed > 0) {
-            int col = (keyPressed - 1) % 3;
-            int row = (keyPressed - 1) / 3;
+            int col = (keyPressed - 1) % order;
+            int row = (keyPressed - 1) / order;
             numberButtons.setCell(col, row, 2);
         }
     }
@@ -158,14 +190,19 @@ public class NumberSelector
         }
     }
 
+    /**
+     * @return the digit of the button at the point, or a number above the
+     *         board size for the clear button
+     */
     private int getKey(int x, int y) {
-        if (y < top + numberButtonHeight * 3) {
-            int col = Math.min((x - left) / numberButtonWidth, 2);
-            int row = Math.min((y - top) / numberButtonHeight, 2);
-            return col + 3 * row + 1;
+        if (y < top + numberButtonHeight * order) {
+            int col = Math.max(0, Math.min((x - buttonsLeft()) / numberButtonWidth,
+                                           order - 1));
+            int row = Math.min((y - top) / numberButtonHeight, order - 1);
+            return col + order * row + 1;
         }
         else {
-            return 10;
+            return size + 1;
         }
     }
 
@@ -192,21 +229,24 @@ public class NumberSelector
         if (type == KEY_RELEASED) {
             return;
         }
+        // The row of the clear button counts as keys size + 1 to
+        // size + order, so that moving up and down keeps the column.
+        final int keys = size + order;
         if (keyPressed > 0) {
             switch (key) {
                 case KEY_UP:
-                    setKeyPressed((keyPressed - 3 - 1 + 12) % 12 + 1);
+                    setKeyPressed((keyPressed - order - 1 + keys) % keys + 1);
                     break;
                 case KEY_DOWN:
-                    setKeyPressed((keyPressed + 3 - 1) % 12 + 1);
+                    setKeyPressed((keyPressed + order - 1) % keys + 1);
                     break;
                 case KEY_LEFT:
-                    setKeyPressed(
-                            (keyPressed - 1) / 3 * 3 + (keyPressed - 1 + 2) % 3 + 1);
+                    setKeyPressed((keyPressed - 1) / order * order
+                                  + (keyPressed - 1 + order - 1) % order + 1);
                     break;
                 case KEY_RIGHT:
-                    setKeyPressed(
-                            (keyPressed - 1) / 3 * 3 + (keyPressed + 1 + 2) % 3 + 1);
+                    setKeyPressed((keyPressed - 1) / order * order
+                                  + keyPressed % order + 1);
                     break;
                 case KEY_SELECT:
                     if (type == KEY_PRESSED) {
@@ -218,7 +258,7 @@ public class NumberSelector
             }
         }
         else {
-            setKeyPressed(5);
+            setKeyPressed(getCenterKey());
         }
     }
 
@@ -8,67 +8,89 @@
 */
 package com.nokia.example.sudokumaster;
 
+import javax.microedition.lcdui.Font;
 import javax.microedition.lcdui.Graphics;
 import javax.microedition.lcdui.Image;
 
 /**
- * Implements the options dialog, which holds "Restart", "New Game" and "Exit"
- * options.
+ * Implements the options dialog, which holds "Undo", "Redo", "Notes",
+ * "Auto", "Hint", "Check", "Restart", "New Game" and "Exit" options. Short
+ * items share a row, and items that switch something on are drawn underlined
+ * while on.
  */
 public class OptionsDialog
     extends ImageView {
 
-    private static final String[] ITEMS = {"Restart", "New Game", "Exit"};
+    public static final int UNDO = 0;
+    public static final int REDO = 1;
+    public static final int NOTES = 2;
+    public static final int AUTO_NOTES = 3;
+    public static final int HINT = 4;
+    public static final int CHECK = 5;
+    public static final int RESTART = 6;
+    public static final int NEW_GAME = 7;
+    public static final int EXIT = 8;
+    private static final String[] ITEMS = {
+        "Undo", "Redo", "Notes", "Auto", "Hint", "Check", "Restart", "New Game", "Exit"
+    };
+    /** Row of each item. Items on the same row split its width. */
+    private static final int[] ROWS = {0, 0, 1, 1, 2, 2, 3, 4, 5};
+    private static final int ROW_COUNT = 6;
+    private final boolean[] checked = new boolean[ITEMS.length];
     private static final int TEXT_COLOR = 0x00000000;
     private static final int HIGHLIGHT_COLOR = 0x00ffff99;
-    private static final int ANIMATION_STEPS = 5;
-    private int[] itemYs = null;
+    /** Time in milliseconds the highlight takes to grow to full height. */
+    private static final long HIGHLIGHT_DURATION = 100;
+    private int[] rowYs = null;
     private final Listener listener;
     private int highlighted = -1;
-    private int highlightAnimationCounter = 0;
+    // Progress of the highlight animation, Animation.FULL when done.
+    private volatile int highlightProgress = Animation.FULL;
+    private final Animation highlightAnimation =
+        new Animation(HIGHLIGHT_DURATION, Animation.EASE_OUT) {
+            protected void step(int progress) {
+                final int h = highlightHeight();
+                highlightProgress = progress;
+                
+                if (h != highlightHeight()) {
+                    invalidate();
+                }
+            }
+        };
 
     public OptionsDialog(Image backgroundImage, Listener listener) {
         super(backgroundImage);
         this.listener = listener;
     }
 
-    /**
-     * Updates the dialog.
-     * @see com.nokia.example.sudokumaster.View#update()
-     */
-    public void update() {
-        if (highlighted < 0) {
-            highlightAnimationCounter = 0;
-        }
-        
-        if (highlightAnimationCounter > 0) {
-            int h = highlightHeight();
-            highlightAnimationCounter = Math.max(highlightAnimationCounter - 1, 0);
-            int newH = highlightHeight();
-            
-            if (h != newH) {
-                invalidate();
-            }
-        }
-    }
-
     public void setTop(int top) {
         super.setTop(top);
-        itemYs = null;
+        rowYs = null;
     }
 
     public void setBottom(int bottom) {
         super.setBottom(bottom);
-        itemYs = null;
+        rowYs = null;
     }
 
     public void setHeight(int height) {
         super.setHeight(height);
-        itemYs = null;
+        rowYs = null;
+    }
+
+    private int padding() {
+        return height / 10;
+    }
+
+    private int itemHeight() {
+        return (height - padding()) / ROW_COUNT;
     }
 
     private int highlightHeight() {
-        return (height / 6 - height * highlightAnimationCounter / ANIMATION_STEPS / 12) / 2 * 2;
+        final int itemHeight = itemHeight();
+        return (itemHeight / 2
+                - itemHeight * (Animation.FULL - highlightProgress) / Animation.FULL / 4)
+               / 2 * 2;
     }
 
     /**
@@ -79,40 +101,90 @@ public class OptionsDialog
     protected void paint(Graphics g) {
         super.paint(g);
         
-        if (itemYs == null) {
-            itemYs = new int[ITEMS.length];
-            int padding = height / 10;
-            int itemHeight = (height - padding) / ITEMS.length;
+        if (rowYs == null) {
+            rowYs = new int[ROW_COUNT];
+            int padding = padding();
+            int itemHeight = itemHeight();
             int itemCenter = top + (padding + itemHeight) / 2;
             
-            for (int i = 0; i < ITEMS.length; i++) {
-                itemYs[i] = itemCenter + i * itemHeight;
+            for (int i = 0; i < ROW_COUNT; i++) {
+                rowYs[i] = itemCenter + i * itemHeight;
             }
         }
         
         if (highlighted >= 0) {
-            int w = width - (width > 128 ? 8 : 6);
+            int margin = width > 128 ? 8 : 6;
+            int columns = columns(ROWS[highlighted]);
+            int w = (width - margin) / columns;
             int h = highlightHeight();
-            int x = left + (width - w) / 2;
-            int y = itemYs[highlighted] - h / 2;
+            int x = left + margin / 2 + column(highlighted) * w;
+            int y = rowYs[ROWS[highlighted]] - h / 2;
             g.setColor(HIGHLIGHT_COLOR);
             g.fillRect(x, y, w, h);
         }
         
+        final Font font = g.getFont();
+        final Font checkedFont = Font.getFont(font.getFace(),
+                                              font.getStyle() | Font.STYLE_UNDERLINED,
+                                              font.getSize());
         int x, y;
-        x = left + width / 2;
         g.setColor(TEXT_COLOR);
         
         for (int i = 0; i < ITEMS.length; i++) {
-            y = itemYs[i] - g.getFont().getHeight() / 2;
+            x = left + width * (2 * column(i) + 1) / (2 * columns(ROWS[i]));
+            y = rowYs[ROWS[i]] - font.getHeight() / 2;
+            g.setFont(checked[i] ? checkedFont : font);
             g.drawString(ITEMS[i], x, y, Graphics.HCENTER | Graphics.TOP);
         }
+        
+        g.setFont(font);
+    }
+
+    /**
+     * @return the number of items on the row
+     */
+    private static int columns(int row) {
+        int columns = 0;
+        
+        for (int i = 0; i < ROWS.length; i++) {
+            if (ROWS[i] == row) {
+                columns++;
+            }
+        }
+        
+        return columns;
+    }
+
+    /**
+     * @return the position of the item on its row
+     */
+    private static int column(int item) {
+        int column = 0;
+        
+        while (item - column > 0 && ROWS[item - column - 1] == ROWS[item]) {
+            column++;
+        }
+        
+        return column;
+    }
+
+    /**
+     * Marks an item that switches something as on or off.
+     * @param item index of the item
+     * @param on true if the item is on
+     */
+    public void setChecked(int item, boolean on) {
+        if (checked[item] != on) {
+            checked[item] = on;
+            invalidate();
+        }
     }
 
     public void setVisible(boolean visible) {
         super.setVisible(visible);
         highlighted = -1;
-        highlightAnimationCounter = 0;
+        Animator.getInstance().stop(highlightAnimation);
+        highlightProgress = Animation.FULL;
     }
 
     /**
@@ -145,7 +217,7 @@ public class OptionsDialog
         }
         
         if (oldHighlighted != highlighted) {
-            highlightAnimationCounter = ANIMATION_STEPS;
+            animateHighlight();
             invalidate();
         }
         return ret;
@@ -187,15 +259,34 @@ public class OptionsDialog
             return -1;
         }
         
-        return Math.min((y - top) / (height / 3), ITEMS.length - 1);
+        final int row = Math.max(0, Math.min((y - top - padding() / 2) / itemHeight(),
+                                             ROW_COUNT - 1));
+        final int columns = columns(row);
+        final int column = Math.min((x - left - width / 6) * columns / (width * 2 / 3),
+                                    columns - 1);
+        int first = 0;
+        
+        while (ROWS[first] != row) {
+            first++;
+        }
+        
+        return first + column;
     }
 
     public void highlightItem(int i) {
         highlighted = i;
-        highlightAnimationCounter = ANIMATION_STEPS;
+        animateHighlight();
         invalidate();
     }
 
+    /**
+     * Grows the highlight from half of its height.
+     */
+    private void animateHighlight() {
+        highlightProgress = 0;
+        Animator.getInstance().start(highlightAnimation);
+    }
+
     public static interface Listener {
         void onItemClick(int itemIndex);
     }
@@ -0,0 +1,145 @@
+/**
+* Copyright (c) 2012-2014 Microsoft Mobile. All rights reserved.
+* Nokia and Nokia Connecting People are registered trademarks of Nokia Corporation. 
+* Oracle and Java are trademarks or registered trademarks of Oracle and/or its
+* affiliates. Other product and company names mentioned herein may be trademarks
+* or trade names of their respective owners. 
+* See LICENSE.TXT for license information.
+*/
+
+package com.nokia.example.sudokumaster;
+
+import javax.microedition.lcdui.Graphics;
+
+/**
+ * Overlay that shows how the game performs on the device: the time the
+ * frames take (minimum, average and 95th percentile), the views repainted
+ * on each frame (average and maximum), the time flushGraphics() takes
+ * (average and maximum) and the free and total heap.
+ *
+ * The figures are collected into fixed arrays over a second at a time and
+ * then shown. The numbers are drawn with a GlyphAtlas, so that the overlay
+ * allocates nothing while it is on and does not distort what it measures.
+ */
+public class PerformanceHud
+    extends View {
+
+    private static final int BACKGROUND_COLOR = 0x00000000;
+    private static final int TEXT_COLOR = 0x0000ff00;
+    private static final String[] LABELS = {"Frame ms", "Views", "Flush ms", "Heap KB"};
+    /** Numbers on each row; the rows have up to three. */
+    private static final int[] COUNTS = {3, 2, 2, 2};
+    /** Time in milliseconds over which the figures are collected. */
+    private static final long PERIOD = 1000;
+    /** Frame times in whole milliseconds; the last bucket holds the longer ones. */
+    private static final int BUCKETS = 128;
+    private final int[] histogram = new int[BUCKETS];
+    private int frames;
+    private long frameTotal;
+    private long frameMin;
+    private long viewTotal;
+    private int viewMax;
+    private long flushTotal;
+    private long flushMax;
+    private long periodStart;
+    // The figures shown, three for each row.
+    private final long[] shown = new long[3 * LABELS.length];
+
+    public PerformanceHud() {
+        super();
+        reset(System.currentTimeMillis());
+    }
+
+    /**
+     * Records a frame. Once the figures of a period are complete, they are
+     * shown and the next period starts.
+     * @param frameTime time in milliseconds the frame took
+     * @param views number of views repainted
+     * @param flushTime time in milliseconds flushGraphics() took
+     */
+    public void frame(long frameTime, int views, long flushTime) {
+        histogram[(int) Math.min(Math.max(frameTime, 0), BUCKETS - 1)]++;
+        frames++;
+        frameTotal += frameTime;
+        frameMin = Math.min(frameMin, frameTime);
+        viewTotal += views;
+        viewMax = Math.max(viewMax, views);
+        flushTotal += flushTime;
+        flushMax = Math.max(flushMax, flushTime);
+        final long now = System.currentTimeMillis();
+        if (now - periodStart >= PERIOD) {
+            final Runtime runtime = Runtime.getRuntime();
+            shown[0] = frameMin;
+            shown[1] = frameTotal / frames;
+            shown[2] = percentile(95);
+            shown[3] = viewTotal / frames;
+            shown[4] = viewMax;
+            shown[6] = flushTotal / frames;
+            shown[7] = flushMax;
+            shown[9] = runtime.freeMemory() / 1024;
+            shown[10] = runtime.totalMemory() / 1024;
+            reset(now);
+            invalidate();
+        }
+    }
+
+    /**
+     * @return the frame time in milliseconds that the given percentage of
+     *         the frames of the period did not exceed
+     */
+    private long percentile(int percent) {
+        final int limit = (frames * percent + 99) / 100;
+        int count = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            count += histogram[i];
+            if (count >= limit) {
+                return i;
+            }
+        }
+        return BUCKETS - 1;
+    }
+
+    private void reset(long now) {
+        for (int i = 0; i < BUCKETS; i++) {
+            histogram[i] = 0;
+        }
+        frames = 0;
+        frameTotal = 0;
+        frameMin = Long.MAX_VALUE;
+        viewTotal = 0;
+        viewMax = 0;
+        flushTotal = 0;
+        flushMax = 0;
+        periodStart = now;
+    }
+
+    public void setVisible(boolean visible) {
+        if (visible && !isVisible()) {
+            // Start over, rather than show what was collected while hidden.
+            reset(System.currentTimeMillis());
+        }
+        super.setVisible(visible);
+    }
+
+    /**
+     * Paints the overlay.
+     * @see com.nokia.example.sudokumaster.View#paint(javax.microedition.lcdui.Graphics)
+     * @param g Graphics object
+     */
+    protected void paint(Graphics g) {
+        g.setColor(BACKGROUND_COLOR);
+        g.fillRect(left, top, width, height);
+        final GlyphAtlas atlas = GlyphAtlas.get(g.getFont(), TEXT_COLOR);
+        final int rowHeight = height / LABELS.length;
+        g.setColor(TEXT_COLOR);
+        for (int row = 0; row < LABELS.length; row++) {
+            final int y = top + row * rowHeight + (rowHeight - atlas.getHeight()) / 2;
+            g.drawString(LABELS[row], left + 2, y, Graphics.LEFT | Graphics.TOP);
+            for (int i = 0; i < COUNTS[row]; i++) {
+                // The numbers are right aligned in the last three fifths.
+                atlas.drawNumber(g, shown[3 * row + i], left + width * (i + 3) / 5 - 2, y,
+                                 Graphics.RIGHT | Graphics.TOP);
+            }
+        }
+    }
+}
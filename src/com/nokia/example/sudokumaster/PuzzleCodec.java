@@ -0,0 +1,122 @@
+/**
+* Copyright (c) 2012-2014 Microsoft Mobile. All rights reserved.
+* Nokia and Nokia Connecting People are registered trademarks of Nokia Corporation. 
+* Oracle and Java are trademarks or registered trademarks of Oracle and/or its
+* affiliates. Other product and company names mentioned herein may be trademarks
+* or trade names of their respective owners. 
+* See LICENSE.TXT for license information.
+*/
+
+package com.nokia.example.sudokumaster;
+
+/**
+ * Binary encoding of puzzles. A 9x9 grid is packed two cells per byte,
+ * four bits each, into 41 bytes.
+ *
+ * Puzzle collections are stored as a 16-byte header followed by fixed size
+ * records, so puzzle n starts at HEADER_SIZE + n * RECORD_SIZE. The header
+ * holds the magic number, the format version, the record size and the
+ * number of records as a long. A record holds the packed puzzle, the
+ * difficulty, the score and a checksum of the solution.
+ */
+public class PuzzleCodec {
+
+    public static final int PACKED_SIZE = 41;
+    public static final int MAGIC = 0x53444b43;
+    public static final int VERSION = 1;
+    public static final int HEADER_SIZE = 16;
+    public static final int RECORD_SIZE = 48;
+    public static final int DIFFICULTY_OFFSET = PACKED_SIZE;
+    public static final int SCORE_OFFSET = PACKED_SIZE + 1;
+    public static final int CHECKSUM_OFFSET = PACKED_SIZE + 3;
+    private static final int SIZE = 9;
+    private static final int CELLS = 81;
+
+    private PuzzleCodec() {
+        // Static methods only.
+    }
+
+    /**
+     * Packs the grid into PACKED_SIZE bytes.
+     * @param grid the grid, values 0-9
+     * @param out destination array
+     * @param offset index of the first byte to write
+     */
+    public static void pack(int[][] grid, byte[] out, int offset) {
+        for (int i = 0; i < PACKED_SIZE; i++) {
+            final int cell = 2 * i;
+            final int high = grid[cell / SIZE][cell % SIZE];
+            final int low = cell + 1 < CELLS
+                    ? grid[(cell + 1) / SIZE][(cell + 1) % SIZE] : 0;
+            out[offset + i] = (byte) (high << 4 | low);
+        }
+    }
+
+    /**
+     * Unpacks a grid packed with pack().
+     * @param in source array
+     * @param offset index of the first byte to read
+     * @param grid destination grid
+     */
+    public static void unpack(byte[] in, int offset, int[][] grid) {
+        for (int cell = 0; cell < CELLS; cell++) {
+            final int b = in[offset + cell / 2];
+            grid[cell / SIZE][cell % SIZE] = (cell & 1) == 0 ? (b >> 4) & 0xf : b & 0xf;
+        }
+    }
+
+    /**
+     * Calculates the Adler-32 checksum of the grid values in row order.
+     * @param grid the grid
+     * @return the checksum
+     */
+    public static int checksum(int[][] grid) {
+        int a = 1;
+        int b = 0;
+        for (int cell = 0; cell < CELLS; cell++) {
+            a = (a + grid[cell / SIZE][cell % SIZE]) % 65521;
+            b = (b + a) % 65521;
+        }
+        return b << 16 | a;
+    }
+
+    /**
+     * Writes one record of a puzzle collection.
+     * @param out destination array
+     * @param offset index of the first byte to write
+     * @param puzzle the puzzle
+     * @param difficulty one of the DifficultyRater.DIFFICULTY_ constants
+     * @param score score from DifficultyRater
+     * @param checksum checksum of the solution
+     */
+    public static void writeRecord(byte[] out, int offset, int[][] puzzle,
+                                   int difficulty, int score, int checksum) {
+        pack(puzzle, out, offset);
+        out[offset + DIFFICULTY_OFFSET] = (byte) difficulty;
+        out[offset + SCORE_OFFSET] = (byte) (score >> 8);
+        out[offset + SCORE_OFFSET + 1] = (byte) score;
+        for (int i = 0; i < 4; i++) {
+            out[offset + CHECKSUM_OFFSET + i] = (byte) (checksum >> (24 - 8 * i));
+        }
+        for (int i = CHECKSUM_OFFSET + 4; i < RECORD_SIZE; i++) {
+            out[offset + i] = 0;
+        }
+    }
+
+    public static int readDifficulty(byte[] in, int offset) {
+        return in[offset + DIFFICULTY_OFFSET];
+    }
+
+    public static int readScore(byte[] in, int offset) {
+        return (in[offset + SCORE_OFFSET] & 0xff) << 8
+               | in[offset + SCORE_OFFSET + 1] & 0xff;
+    }
+
+    public static int readChecksum(byte[] in, int offset) {
+        int checksum = 0;
+        for (int i = 0; i < 4; i++) {
+            checksum = checksum << 8 | in[offset + CHECKSUM_OFFSET + i] & 0xff;
+        }
+        return checksum;
+    }
+}
@@ -0,0 +1,94 @@
+/**
+* Copyright (c) 2012-2014 Microsoft Mobile. All rights reserved.
+* Nokia and Nokia Connecting People are registered trademarks of Nokia Corporation. 
+* Oracle and Java are trademarks or registered trademarks of Oracle and/or its
+* affiliates. Other product and company names mentioned herein may be trademarks
+* or trade names of their respective owners. 
+* See LICENSE.TXT for license information.
+*/
+
+package com.nokia.example.sudokumaster;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Random;
+
+/**
+ * Reads puzzles bundled with the application. The pack is a puzzle
+ * collection in the PuzzleCodec format, exported from a larger corpus with
+ * the desktop tools.
+ */
+public class PuzzlePack {
+
+    private static final String RESOURCE = "/puzzles.bin";
+    private static final Random random = new Random();
+
+    private PuzzlePack() {
+        // Static methods only.
+    }
+
+    /**
+     * Picks a random bundled puzzle of the given difficulty. The records
+     * have no room for the solution, so the puzzle is solved here, and the
+     * solution is checked against the checksum of the record.
+     * @param difficulty one of the DifficultyRater.DIFFICULTY_ constants
+     * @param solution grid to fill with the solution of the puzzle, or null
+     * @return the puzzle, or null if there is no pack or no puzzle of that
+     *         difficulty in it, or if the record is damaged
+     */
+    public static int[][] pick(int difficulty, int[][] solution) {
+        final InputStream in = PuzzlePack.class.getResourceAsStream(RESOURCE);
+        if (in == null) {
+            return null;
+        }
+        try {
+            final DataInputStream din = new DataInputStream(in);
+            if (din.readInt() != PuzzleCodec.MAGIC
+                    || din.readShort() != PuzzleCodec.VERSION
+                    || din.readShort() != PuzzleCodec.RECORD_SIZE) {
+                return null;
+            }
+            final long count = din.readLong();
+            final byte[] record = new byte[PuzzleCodec.RECORD_SIZE];
+            final byte[] picked = new byte[PuzzleCodec.RECORD_SIZE];
+            int matches = 0;
+            for (long i = 0; i < count; i++) {
+                din.readFully(record);
+                if (PuzzleCodec.readDifficulty(record, 0) != difficulty) {
+                    continue;
+                }
+                // Reservoir sampling picks every match with equal odds.
+                matches++;
+                if (random.nextInt(matches) == 0) {
+                    System.arraycopy(record, 0, picked, 0, picked.length);
+                }
+            }
+            if (matches == 0) {
+                return null;
+            }
+            final int[][] puzzle = new int[9][9];
+            PuzzleCodec.unpack(picked, 0, puzzle);
+            if (solution != null) {
+                PuzzleCodec.unpack(picked, 0, solution);
+                if (!new BitmaskSolver().solve(solution)
+                        || PuzzleCodec.checksum(solution)
+                           != PuzzleCodec.readChecksum(picked, 0)) {
+                    return null;
+                }
+            }
+            return puzzle;
+        }
+        catch (IOException e) {
+            return null;
+        }
+        finally {
+            try {
+                in.close();
+            }
+            catch (IOException e) {
+                // Empty implementation.
+            }
+        }
+    }
+}
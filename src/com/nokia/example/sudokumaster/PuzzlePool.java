@@ -0,0 +1,218 @@
+/**
+* Copyright (c) 2012-2014 Microsoft Mobile. All rights reserved.
+* Nokia and Nokia Connecting People are registered trademarks of Nokia Corporation. 
+* Oracle and Java are trademarks or registered trademarks of Oracle and/or its
+* affiliates. Other product and company names mentioned herein may be trademarks
+* or trade names of their respective owners. 
+* See LICENSE.TXT for license information.
+*/
+
+package com.nokia.example.sudokumaster;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * Keeps a few ready-made puzzles of every difficulty so that a new game can
+ * start without waiting for the generator. A low priority background
+ * thread refills the queues whenever the user has been idle for a while.
+ * Every puzzle is kept with its solution, packed with PuzzleCodec.
+ */
+public class PuzzlePool
+    implements Runnable {
+
+    /** Number of puzzles kept for each difficulty. */
+    private static final int CAPACITY = 3;
+    private static final int DIFFICULTIES = DifficultyRater.DIFFICULTY_HARD + 1;
+    /** Time in milliseconds without input before the pool is refilled. */
+    private static final long IDLE_DELAY = 1500;
+    private static final int CELLS = 81;
+    /** A puzzle, one byte per cell, followed by its packed solution. */
+    private static final int ENTRY_SIZE = CELLS + PuzzleCodec.PACKED_SIZE;
+    /** First byte of the state; older versions stored no solutions. */
+    private static final int STATE_MARK = -1;
+    private final byte[][][] queues = new byte[DIFFICULTIES][CAPACITY][];
+    private final int[] heads = new int[DIFFICULTIES];
+    private final int[] sizes = new int[DIFFICULTIES];
+    private volatile Thread thread;
+    private volatile long lastInput = 0;
+
+    /**
+     * Starts the background producer if it is not running already.
+     */
+    public synchronized void start() {
+        if (thread != null) {
+            return;
+        }
+        thread = new Thread(this);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        thread.start();
+    }
+
+    /**
+     * Stops the background producer. The puzzle being generated, if any,
+     * is finished first but the call does not wait for it.
+     */
+    public synchronized void stop() {
+        thread = null;
+        notifyAll();
+    }
+
+    /**
+     * Tells the pool that the user is active, which postpones refilling.
+     */
+    public void onInput() {
+        lastInput = System.currentTimeMillis();
+    }
+
+    /**
+     * Takes a puzzle from the pool.
+     * @param difficulty one of the DifficultyRater.DIFFICULTY_ constants
+     * @param solution grid to fill with the solution of the puzzle, or null
+     * @return the puzzle, or null if there is none of that difficulty
+     */
+    public synchronized int[][] take(int difficulty, int[][] solution) {
+        if (sizes[difficulty] == 0) {
+            return null;
+        }
+        final int head = heads[difficulty];
+        final byte[] cells = queues[difficulty][head];
+        queues[difficulty][head] = null;
+        heads[difficulty] = (head + 1) % CAPACITY;
+        sizes[difficulty]--;
+        notifyAll();
+        final int[][] puzzle = new int[9][9];
+        for (int cell = 0; cell < CELLS; cell++) {
+            puzzle[cell / 9][cell % 9] = cells[cell];
+        }
+        if (solution != null) {
+            PuzzleCodec.unpack(cells, CELLS, solution);
+        }
+        return puzzle;
+    }
+
+    private synchronized void put(int difficulty, byte[] cells) {
+        if (sizes[difficulty] < CAPACITY) {
+            queues[difficulty][(heads[difficulty] + sizes[difficulty]) % CAPACITY] = cells;
+            sizes[difficulty]++;
+        }
+    }
+
+    /**
+     * @return the difficulty with the fewest puzzles, or -1 if all are full
+     */
+    private synchronized int emptiest() {
+        int emptiest = -1;
+        for (int d = 0; d < DIFFICULTIES; d++) {
+            if (sizes[d] < CAPACITY && (emptiest < 0 || sizes[d] < sizes[emptiest])) {
+                emptiest = d;
+            }
+        }
+        return emptiest;
+    }
+
+    /**
+     * Generates puzzles until the pool is stopped. Every generated puzzle
+     * is rated and kept if there is room for its difficulty.
+     * @see java.lang.Runnable#run()
+     */
+    public void run() {
+        final SudokuGenerator generator = new SudokuGenerator();
+        final DifficultyRater rater = new DifficultyRater();
+        while (thread == Thread.currentThread()) {
+            synchronized (this) {
+                try {
+                    final long idle = System.currentTimeMillis() - lastInput;
+                    if (emptiest() < 0) {
+                        wait();
+                        continue;
+                    }
+                    if (idle < IDLE_DELAY) {
+                        wait(IDLE_DELAY - idle);
+                        continue;
+                    }
+                }
+                catch (InterruptedException e) {
+                    return;
+                }
+            }
+            final int[][] puzzle = generator.generate(SudokuGenerator.SYMMETRY_ROTATIONAL);
+            final int difficulty = rater.rate(puzzle);
+            if (difficulty >= 0 && difficulty < DIFFICULTIES) {
+                final byte[] cells = new byte[ENTRY_SIZE];
+                for (int cell = 0; cell < CELLS; cell++) {
+                    cells[cell] = (byte) puzzle[cell / 9][cell % 9];
+                }
+                PuzzleCodec.pack(generator.getSolution(), cells, CELLS);
+                put(difficulty, cells);
+            }
+            Thread.yield();
+        }
+    }
+
+    /**
+     * Gets the puzzles left in the pool, so that they survive a restart.
+     * @return the puzzles as a byte array
+     */
+    public synchronized byte[] getState() {
+        ByteArrayOutputStream bout = null;
+        try {
+            bout = new ByteArrayOutputStream();
+            DataOutputStream dout = new DataOutputStream(bout);
+            dout.writeByte(STATE_MARK);
+            for (int d = 0; d < DIFFICULTIES; d++) {
+                dout.writeByte(sizes[d]);
+                for (int i = 0; i < sizes[d]; i++) {
+                    dout.write(queues[d][(heads[d] + i) % CAPACITY]);
+                }
+            }
+            return bout.toByteArray();
+        }
+        catch (IOException e) {
+            return new byte[0];
+        }
+        finally {
+            try {
+                if (bout != null) {
+                    bout.close();
+                }
+            }
+            catch (IOException e) {
+                // Empty implementation.
+            }
+        }
+    }
+
+    /**
+     * Replaces the puzzles in the pool with the ones saved by getState().
+     * Puzzles saved by older versions, without their solutions, are
+     * dropped; the pool fills up again in the background.
+     * @param state state in byte array
+     */
+    public synchronized void setState(byte[] state) {
+        try {
+            DataInputStream din = new DataInputStream(new ByteArrayInputStream(state));
+            for (int d = 0; d < DIFFICULTIES; d++) {
+                heads[d] = 0;
+                sizes[d] = 0;
+            }
+            if (din.readByte() != STATE_MARK) {
+                return;
+            }
+            for (int d = 0; d < DIFFICULTIES; d++) {
+                final int size = din.readByte();
+                for (int i = 0; i < size; i++) {
+                    final byte[] cells = new byte[ENTRY_SIZE];
+                    din.readFully(cells);
+                    put(d, cells);
+                }
+            }
+        }
+        catch (IOException e) {
+            // Empty implementation.
+        }
+    }
+}
@@ -0,0 +1,128 @@
+/**
+* Copyright (c) 2012-2014 Microsoft Mobile. All rights reserved.
+* Nokia and Nokia Connecting People are registered trademarks of Nokia Corporation. 
+* Oracle and Java are trademarks or registered trademarks of Oracle and/or its
+* affiliates. Other product and company names mentioned herein may be trademarks
+* or trade names of their respective owners. 
+* See LICENSE.TXT for license information.
+*/
+
+package com.nokia.example.sudokumaster;
+
+/**
+ * Thread that draws the frames of the game. Instead of polling at a fixed
+ * rate, it sleeps until woken, which is done whenever a view is
+ * invalidated, or until the time the listener asks for, such as the next
+ * second of the clock. Frames follow each other every FRAME_TIME
+ * milliseconds only while something animates, so an idle board costs
+ * next to no CPU time.
+ */
+public class RenderLoop
+    implements Runnable {
+
+    /** Time in milliseconds between the frames of an animation. */
+    private static final long FRAME_TIME = 20;
+    private final Listener listener;
+    private volatile Thread thread;
+    // True if the loop was woken since the current frame started.
+    private boolean woken = false;
+
+    public RenderLoop(Listener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Starts the loop if it is not running already.
+     */
+    public synchronized void start() {
+        if (thread != null) {
+            return;
+        }
+        thread = new Thread(this);
+        thread.start();
+    }
+
+    /**
+     * Stops the loop and waits for the frame being drawn, if any, to be
+     * finished, so that a loop started after this never draws at the same
+     * time as the old one. Called from the loop itself, it does not wait.
+     */
+    public void stop() {
+        final Thread old;
+        synchronized (this) {
+            old = thread;
+            thread = null;
+            notifyAll();
+        }
+        if (old != null && old != Thread.currentThread()) {
+            try {
+                old.join();
+            }
+            catch (InterruptedException e) {
+                // Empty implementation.
+            }
+        }
+    }
+
+    public boolean isRunning() {
+        return thread != null;
+    }
+
+    /**
+     * Asks for a new frame. Frames are not drawn more often than every
+     * FRAME_TIME milliseconds however often this is called.
+     */
+    public synchronized void wake() {
+        woken = true;
+        notifyAll();
+    }
+
+    public void run() {
+        // Start of the last frame.
+        long start = 0;
+        while (thread == Thread.currentThread()) {
+            try {
+                final long rest = FRAME_TIME - (System.currentTimeMillis() - start);
+                if (rest > 0) {
+                    Thread.sleep(rest);
+                }
+                else {
+                    // The device falls behind, but let the other threads run.
+                    Thread.yield();
+                }
+                start = System.currentTimeMillis();
+                synchronized (this) {
+                    woken = false;
+                }
+                listener.onFrame();
+                final boolean animating = listener.isAnimating();
+                synchronized (this) {
+                    if (!woken && !animating && thread == Thread.currentThread()) {
+                        wait(Math.max(listener.getIdleTime(), 0));
+                    }
+                }
+            }
+            catch (InterruptedException e) {
+                // Empty implementation.
+            }
+        }
+    }
+
+    public static interface Listener {
+        /**
+         * Updates and draws a frame.
+         */
+        void onFrame();
+
+        /**
+         * @return true if the next frame should follow right away
+         */
+        boolean isAnimating();
+
+        /**
+         * @return the time in milliseconds the loop may sleep without
+         *         being woken, or 0 to sleep until woken
+         */
+        long getIdleTime();
+    }
+}
@@ -0,0 +1,33 @@
+/**
+* Copyright (c) 2012-2014 Microsoft Mobile. All rights reserved.
+* Nokia and Nokia Connecting People are registered trademarks of Nokia Corporation. 
+* Oracle and Java are trademarks or registered trademarks of Oracle and/or its
+* affiliates. Other product and company names mentioned herein may be trademarks
+* or trade names of their respective owners. 
+* See LICENSE.TXT for license information.
+*/
+
+package com.nokia.example.sudokumaster;
+
+/**
+ * Sudoku solver backend. The generator and the game depend on this
+ * interface only, so the backend can be chosen per workload.
+ */
+public interface Solver {
+
+    /**
+     * Solves the puzzle. The grid is filled in place if a solution is found.
+     * @param grid the puzzle, 0 for empty cells
+     * @return true if the puzzle has a solution
+     */
+    boolean solve(int[][] grid);
+
+    /**
+     * Counts the solutions of the puzzle. The search stops as soon as the
+     * limit is reached, so a limit of 2 is enough to test uniqueness.
+     * @param grid the puzzle, 0 for empty cells. The grid is not modified.
+     * @param limit the maximum number of solutions to look for
+     * @return the number of solutions found, at most limit
+     */
+    int countSolutions(int[][] grid, int limit);
+}
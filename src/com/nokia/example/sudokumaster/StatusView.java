@@ -21,7 +21,7 @@ public class StatusView
 
     private static final int TEXT_COLOR = 0x00ffffff;
     private Image image;
-    private String text = "";
+    private volatile String text = "";
 
     public StatusView(Image image) {
         super();
@@ -36,17 +36,17 @@ public class StatusView
     protected void paint(Graphics g) {
         g.drawImage(image, left, top + height / 2,
                     Graphics.LEFT | Graphics.VCENTER);
-        g.setColor(TEXT_COLOR);
-        g.drawString(text, left + image.getWidth() + 3,
-                     top + height / 2 - g.getFont().getHeight() / 2,
-                     Graphics.LEFT | Graphics.TOP);
+        final GlyphAtlas atlas = GlyphAtlas.get(g.getFont(), TEXT_COLOR);
+        atlas.drawChars(g, text, left + image.getWidth() + 3,
+                        top + height / 2 - atlas.getHeight() / 2,
+                        Graphics.LEFT | Graphics.TOP);
     }
 
     public void setText(String text) {
         if (!this.text.equals(text)) {
+            // Set before invalidating, as the render loop may paint at once.
+            this.text = text;
             invalidate();
         }
-        
-        this.text = text;
     }
 }
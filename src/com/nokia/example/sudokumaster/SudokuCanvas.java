@@ -9,8 +9,6 @@
 
 package com.nokia.example.sudokumaster;
 
-import java.util.Timer;
-import java.util.TimerTask;
 import javax.microedition.lcdui.Command;
 import javax.microedition.lcdui.CommandListener;
 import javax.microedition.lcdui.Displayable;
@@ -30,8 +28,41 @@ public class SudokuCanvas
 
     private static final int LEFT_SOFTKEY = -6;
     private static final int RIGHT_SOFTKEY = -7;
+    private static final int NEW_GAME_DIFFICULTY = DifficultyRater.DIFFICULTY_MEDIUM;
+    /** Application property with the board order of new games, 3 for 9x9. */
+    private static final String BOARD_ORDER_PROPERTY = "Sudokumaster-Board-Order";
+    /** Application property with the variant of new games. */
+    private static final String VARIANT_PROPERTY = "Sudokumaster-Variant";
+    /** Values of VARIANT_PROPERTY, indexed by the Variant constants. */
+    private static final String[] VARIANT_NAMES = {"classic", "diagonal", "windoku", "killer"};
     private Main main;
-    private Timer timer;
+    private final RenderLoop renderLoop = new RenderLoop(new RenderLoop.Listener() {
+        public void onFrame() {
+            final long start = System.currentTimeMillis();
+            Animator.getInstance().tick();
+            updateElapsed();
+            layout.update();
+            final int views = render(graphics);
+            
+            if (hud.isVisible()) {
+                hud.frame(System.currentTimeMillis() - start, views, flushTime);
+            }
+        }
+
+        public boolean isAnimating() {
+            return Animator.getInstance().isActive() || layout.isAnimating();
+        }
+
+        public long getIdleTime() {
+            // Wake for the clock only while it is shown.
+            return elapsed.isVisible() ? sudoku.getTimeToNextSecond() : 0;
+        }
+    });
+    private Graphics graphics;
+    // Time in milliseconds the last flushGraphics() took.
+    private long flushTime;
+    // Elapsed seconds shown by the clock.
+    private long shownSeconds = -1;
     private Layout layout;
     private ImageView title;
     private Button exit;
@@ -45,6 +76,17 @@ public class SudokuCanvas
     private NumberSelector numberSelector;
     private VictoryDialog victoryDialog;
     private OptionsDialog optionsDialog;
+    private PerformanceHud hud;
+    // True if the star key is held down, and the hash key has been
+    // pressed with it.
+    private boolean starDown = false;
+    private boolean chordUsed = false;
+    private final PuzzlePool puzzlePool = new PuzzlePool();
+    private final int boardOrder;
+    private final int variantType;
+    // Generator of the games the pool and the bundle cannot give,
+    // created on the first one.
+    private SudokuGenerator generator;
 
     private Command backCommand;
 
@@ -52,12 +94,56 @@ public class SudokuCanvas
         super(false);
         setFullScreenMode(true);
         this.main = main;
+        boardOrder = readBoardOrder(main);
+        variantType = readVariantType(main, boardOrder);
 
         backCommand = new Command("Back", Command.BACK, 0);
         addCommand(backCommand);
         setCommandListener(this);
     }
 
+    /**
+     * @return the board order of new games from the application properties
+     */
+    private static int readBoardOrder(Main main) {
+        final String value = main.getAppProperty(BOARD_ORDER_PROPERTY);
+        
+        if (value != null) {
+            try {
+                final int order = Integer.parseInt(value.trim());
+                
+                if (order >= BoardGeometry.MIN_ORDER && order <= BoardGeometry.MAX_ORDER) {
+                    return order;
+                }
+            }
+            catch (NumberFormatException e) {
+                // Empty implementation.
+            }
+        }
+        
+        return 3;
+    }
+
+    /**
+     * @return the variant of new games from the application properties, or
+     *         classic sudoku if the variant is not supported on the board
+     */
+    private static int readVariantType(Main main, int boardOrder) {
+        final String value = main.getAppProperty(VARIANT_PROPERTY);
+        
+        if (value != null) {
+            for (int type = 0; type < VARIANT_NAMES.length; type++) {
+                if (VARIANT_NAMES[type].equals(value.trim().toLowerCase())
+                    && Variant.isSupported(type, boardOrder))
+                {
+                    return type;
+                }
+            }
+        }
+        
+        return Variant.CLASSIC;
+    }
+
     /**
      * @see javax.microedition.lcdui.CommandListener#commandAction(
      * javax.microedition.lcdui.Command, javax.microedition.lcdui.Displayable)
@@ -87,7 +173,11 @@ public class SudokuCanvas
         
         loadGameState();
         updateEmptyAndMoves();
-        startTimer();
+        // Only changed areas are flushed, so draw the whole screen once
+        // after something else has been shown.
+        layout.invalidate();
+        startRenderLoop();
+        puzzlePool.start();
     }
 
     /**
@@ -95,7 +185,8 @@ public class SudokuCanvas
      * @see javax.microedition.lcdui.Canvas#hideNotify()
      */
     protected void hideNotify() {
-        stopTimer();
+        renderLoop.stop();
+        puzzlePool.stop();
         
         if (!main.isClosed()) {
             saveGameState();
@@ -109,39 +200,22 @@ public class SudokuCanvas
      * @param h the new height in pixels of the drawable area of the Canvas
      */
     protected void sizeChanged(int w, int h) {
-        if (timer != null) {
-            stopTimer();
+        if (renderLoop.isRunning()) {
+            renderLoop.stop();
             updateLayout(w, h);
-            startTimer();
+            startRenderLoop();
         }
     }
 
-    private void startTimer() {
+    private void startRenderLoop() {
         final Graphics g = getGraphics();
         
         if (isSmallScreen(getWidth(), getHeight())) {
-            g.setFont(Font.getFont(Font.FACE_SYSTEM, Font.STYLE_PLAIN,
-                                   Font.SIZE_SMALL));
+            g.setFont(getFont(getWidth(), getHeight()));
         }
         
-        timer = new Timer();
-        
-        timer.schedule(new TimerTask() {
-            public void run() {
-                render(g);
-            }
-        }, 0, 20);
-        
-        timer.scheduleAtFixedRate(new TimerTask() {
-            public void run() {
-                updateElapsed();
-            }
-        }, 0, 1000);
-    }
-
-    private void stopTimer() {
-        timer.cancel();
-        timer = null;
+        graphics = g;
+        renderLoop.start();
     }
 
     /**
@@ -162,6 +236,15 @@ public class SudokuCanvas
             
             byte[] data = sudoku.getState();
             gameState.setRecord(1, data, 0, data.length);
+            
+            RecordStore pool = RecordStore.openRecordStore("PuzzlePool", true);
+            
+            if (pool.getNumRecords() == 0) {
+                pool.addRecord(null, 0, 0);
+            }
+            
+            data = puzzlePool.getState();
+            pool.setRecord(1, data, 0, data.length);
         }
         catch (RecordStoreException e) {
             // Empty implementation
@@ -178,10 +261,16 @@ public class SudokuCanvas
         }
         
         try {
+            RecordStore pool = RecordStore.openRecordStore("PuzzlePool", true);
+            
+            if (pool.getNumRecords() > 0) {
+                puzzlePool.setState(pool.getRecord(1));
+            }
+            
             RecordStore gameState = RecordStore.openRecordStore("GameState", true);
             
             if (gameState.getNumRecords() == 0) {
-                sudoku.newGame(SudokuGenerator.newPuzzle());
+                newGame();
             }
             else {
                 sudoku.setState(gameState.getRecord(1));
@@ -196,17 +285,84 @@ public class SudokuCanvas
         }
     }
 
-    private void render(Graphics g) {
-        if (layout.needsRendering()) {
-            layout.render(g);
-            flushGraphics();
+    /**
+     * Starts a new game. The puzzle is taken from the pool. If the pool has
+     * run out, a bundled puzzle is used, and only if there is none a new
+     * one is generated. The pool and the bundle hold classic 9x9 puzzles
+     * only, so other games are always generated. Every source gives the
+     * solution along with the puzzle.
+     */
+    private void newGame() {
+        int[][] solution = new int[9][9];
+        int[][] puzzle = null;
+        Variant variant = null;
+        
+        if (boardOrder == 3 && variantType == Variant.CLASSIC) {
+            puzzle = puzzlePool.take(NEW_GAME_DIFFICULTY, solution);
+            
+            if (puzzle == null) {
+                puzzle = PuzzlePack.pick(NEW_GAME_DIFFICULTY, solution);
+            }
+        }
+        
+        if (puzzle == null) {
+            if (generator == null) {
+                generator = SudokuGenerator.forNewGames(boardOrder, variantType);
+            }
+            
+            puzzle = generator.newGame(NEW_GAME_DIFFICULTY);
+            solution = generator.getSolution();
+            variant = generator.getVariant();
+        }
+        
+        // The puzzles are grid[row][col] and the view takes puzzle[col][row];
+        // the cages of a variant are in row order.
+        sudoku.newGame(transpose(puzzle), variant, transpose(solution));
+    }
+
+    private static int[][] transpose(int[][] grid) {
+        final int[][] transposed = new int[grid.length][grid.length];
+        
+        for (int row = 0; row < grid.length; row++) {
+            for (int col = 0; col < grid.length; col++) {
+                transposed[col][row] = grid[row][col];
+            }
+        }
+        
+        return transposed;
+    }
+
+    /**
+     * Draws the changed part of the screen.
+     * @return the number of views repainted
+     */
+    private int render(Graphics g) {
+        flushTime = 0;
+        
+        if (!layout.needsRendering()) {
+            return 0;
         }
         
-        layout.update();
+        layout.render(g);
+        
+        if (layout.getRenderedWidth() > 0) {
+            final long start = System.currentTimeMillis();
+            flushGraphics(layout.getRenderedLeft(), layout.getRenderedTop(),
+                          layout.getRenderedWidth(), layout.getRenderedHeight());
+            flushTime = System.currentTimeMillis() - start;
+        }
+        
+        return layout.getRenderedViews();
     }
 
     private void updateElapsed() {
         long s = sudoku.getElapsedSeconds();
+        
+        if (s == shownSeconds) {
+            return;
+        }
+        
+        shownSeconds = s;
         long m = s / 60;
         s = s % 60;
         StringBuffer text = new StringBuffer(5);
@@ -268,6 +424,7 @@ public class SudokuCanvas
      * @param y coordinate of event
      */
     private void handlePointerEvent(int type, int x, int y) {
+        puzzlePool.onInput();
         options.handlePointerEvent(type, x, y);
         
         if (exit != null && back != null) {
@@ -324,6 +481,27 @@ public class SudokuCanvas
      * @param i key code
      */
     private void handleKeyEvent(int type, int i) {
+        puzzlePool.onInput();
+        
+        if (i == KEY_STAR && type != View.KEY_REPEAT) {
+            starDown = type == View.KEY_PRESSED;
+            
+            if (starDown) {
+                chordUsed = false;
+            }
+        }
+        
+        if (i == KEY_POUND && starDown) {
+            // Pressing the hash key while holding the star key shows or
+            // hides the performance overlay.
+            if (type == View.KEY_PRESSED) {
+                hud.setVisible(!hud.isVisible());
+                chordUsed = true;
+            }
+            
+            return;
+        }
+        
         if (i == LEFT_SOFTKEY) {
             options.keyEvent(type);
         }
@@ -346,7 +524,20 @@ public class SudokuCanvas
         else {
             int n = getNumber(i);
             
-            if (n >= 0) {
+            if (i == KEY_STAR) {
+                // The star key undoes a move when released, unless it was
+                // part of the chord of the performance overlay.
+                if (type == View.KEY_RELEASED && !chordUsed) {
+                    sudoku.undo();
+                }
+            }
+            else if (i == KEY_POUND) {
+                // The hash key redoes a move.
+                if (type == View.KEY_PRESSED) {
+                    sudoku.redo();
+                }
+            }
+            else if (n >= 0 && n <= sudoku.getModel().getSize()) {
                 if (type == View.KEY_PRESSED) {
                     sudoku.setNumber(n);
                 }
@@ -419,10 +610,31 @@ public class SudokuCanvas
         return false;
     }
 
+    /**
+     * @return the font the views are drawn with
+     */
+    private Font getFont(int w, int h) {
+        if (isSmallScreen(w, h)) {
+            return Font.getFont(Font.FACE_SYSTEM, Font.STYLE_PLAIN, Font.SIZE_SMALL);
+        }
+        
+        return Font.getDefaultFont();
+    }
+
     private void generateLayout() {
         final int w = getWidth();
         final int h = getHeight();
         layout = new Layout(w, h);
+        layout.setListener(new Layout.Listener() {
+            public void onInvalidated() {
+                renderLoop.wake();
+            }
+        });
+        Animator.getInstance().setListener(new Animator.Listener() {
+            public void onStarted() {
+                renderLoop.wake();
+            }
+        });
         generateTitle(w, h);
         generateButtons();
         generateBoard(w, h);
@@ -430,6 +642,7 @@ public class SudokuCanvas
         generateNumberSelector(w, h);
         generateVictoryDialog(w, h);
         generateOptionsDialog(w, h);
+        generatePerformanceHud();
         updateLayout(w, h);
     }
 
@@ -441,13 +654,14 @@ public class SudokuCanvas
         updateNumberSelector(w, h);
         updateVictoryDialog(w, h);
         updateOptionsDialog(w, h);
+        updatePerformanceHud(w, h);
         layout.setSize(w, h);
         layout.invalidate();
     }
 
     private void generateTitle(int w, int h) {
         title = new ImageView(ImageLoader.loadImage("title.png", isSmallScreen(w, h)));
-        layout.addView(title);
+        layout.addStaticView(title);
     }
 
     private void updateTitle(int w, int h) {
@@ -485,14 +699,14 @@ public class SudokuCanvas
             // Exit and back buttons are not needed if the phone has a
             // physical back button
             exit = new Button("Exit", buttonListener);
-            layout.addView(exit);
+            layout.addStaticView(exit);
             back = new Button("Back", buttonListener);
             back.setVisible(false);
-            layout.addView(back);
+            layout.addStaticView(back);
         }
         
         options = new Button("Menu", buttonListener);
-        layout.addView(options);
+        layout.addStaticView(options);
     }
 
     private void back() {
@@ -598,6 +812,8 @@ public class SudokuCanvas
         moves = new StatusView(ImageLoader.loadImage("moves.png", smallScreen));
         elapsed = new StatusView(ImageLoader.loadImage("time.png", smallScreen));
         
+        // Not static: the counts change with every move and the time
+        // every second.
         layout.addView(empty);
         layout.addView(moves);
         layout.addView(elapsed);
@@ -693,19 +909,38 @@ public class SudokuCanvas
                     hideOptionsDialog();
                     
                     switch (itemIndex) {
-                        case 0:
+                        case OptionsDialog.UNDO:
+                            hideVictoryDialog();
+                            sudoku.undo();
+                            break;
+                        case OptionsDialog.REDO:
+                            sudoku.redo();
+                            break;
+                        case OptionsDialog.NOTES:
+                            sudoku.setNotesMode(!sudoku.isNotesMode());
+                            break;
+                        case OptionsDialog.AUTO_NOTES:
+                            sudoku.getModel().setAutoNotes(!sudoku.getModel().isAutoNotes());
+                            break;
+                        case OptionsDialog.HINT:
+                            sudoku.hint();
+                            break;
+                        case OptionsDialog.CHECK:
+                            sudoku.check();
+                            break;
+                        case OptionsDialog.RESTART:
                             sudoku.restart();
                             hideVictoryDialog();
                             updateEmptyAndMoves();
                             updateElapsed();
                             break;
-                        case 1:
-                            sudoku.newGame(SudokuGenerator.newPuzzle());
+                        case OptionsDialog.NEW_GAME:
+                            newGame();
                             hideVictoryDialog();
                             updateEmptyAndMoves();
                             updateElapsed();
                             break;
-                        case 2:
+                        case OptionsDialog.EXIT:
                             main.close();
                         break;
                         default:
@@ -744,6 +979,23 @@ public class SudokuCanvas
         }
     }
 
+    /**
+     * Generates the performance overlay, which is hidden until the star
+     * and hash keys are pressed together.
+     */
+    private void generatePerformanceHud() {
+        hud = new PerformanceHud();
+        hud.setVisible(false);
+        layout.addView(hud);
+    }
+
+    private void updatePerformanceHud(int w, int h) {
+        hud.setSize(w, 4 * (getFont(w, h).getHeight() + 2));
+        hud.setLeft(0);
+        hud.setTop(0);
+        hud.invalidate();
+    }
+
     private void refreshBackButton() {
         if (exit == null || back == null) {
             return;
@@ -760,10 +1012,12 @@ public class SudokuCanvas
     }
 
     private void showNumberSelector() {
+        numberSelector.setOrder(sudoku.getModel().getGeometry().order);
+        updateNumberSelector(getWidth(), getHeight());
         numberSelector.setVisible(true);
         
         if (!hasPointerEvents()) {
-            numberSelector.setKeyPressed(5);
+            numberSelector.setKeyPressed(numberSelector.getCenterKey());
         }
         
         refreshBackButton();
@@ -792,6 +1046,8 @@ public class SudokuCanvas
         if (numberSelector.isVisible()) {
             hideNumberSelector();
         }
+        optionsDialog.setChecked(OptionsDialog.NOTES, sudoku.isNotesMode());
+        optionsDialog.setChecked(OptionsDialog.AUTO_NOTES, sudoku.getModel().isAutoNotes());
         optionsDialog.setVisible(true);
         
         if (!hasPointerEvents()) {
@@ -10,78 +10,470 @@
 package com.nokia.example.sudokumaster;
 
 import java.util.Random;
-import java.util.Vector;
 
 /**
- * Generates a sudoku puzzle. There are three puzzles to randomly choose from.
+ * Generates sudoku puzzles. A random solution grid is filled first, after
+ * which clues are removed in random order, keeping the chosen symmetry,
+ * as long as the puzzle still has exactly one solution.
+ *
+ * Boards of other orders than 9x9 get their solution grid from a fixed
+ * pattern, shuffled with transformations that keep it valid, because
+ * filling a large empty board with the solver can take too long. They are
+ * not rated, since DifficultyRater knows only 9x9 boards; the time spent
+ * on removing clues decides how hard they get instead.
+ *
+ * Puzzles of a Variant need BitmaskSolver, which checks the rules of the
+ * variant while filling the grid and testing uniqueness. Diagonal and
+ * Windoku grids are filled by the solver with random branching. Killer
+ * grids are filled like classic ones and then divided into cages, which
+ * let many more clues go. Variant puzzles are not rated either.
+ *
+ * The solution grid of every puzzle is kept until the next one, so the
+ * game does not have to solve the puzzle again.
  */
 public class SudokuGenerator {
-    private static final int[][] PUZZLE_0 = {
-        {4,0,5,0,0,0,0,3,0},
-        {0,0,9,7,5,0,0,0,0},
-        {2,1,0,9,0,0,7,4,0},
-        {0,8,0,5,3,0,4,2,7},
-        {0,0,7,0,0,0,3,0,0},
-        {3,4,2,0,7,8,0,9,0},
-        {0,5,8,0,0,7,0,1,4},
-        {0,0,0,0,6,1,2,0,0},
-        {0,2,0,0,0,0,6,0,3}};
-    private static final int[][] PUZZLE_1 = {
-        {9,5,0,0,3,0,0,1,2},
-        {0,2,0,5,0,0,3,0,0},
-        {0,0,8,2,6,0,0,0,0},
-        {0,7,1,0,9,0,8,0,0},
-        {6,9,0,0,8,0,0,2,3},
-        {0,0,3,0,5,0,6,7,0},
-        {0,0,0,0,2,6,5,0,0},
-        {0,0,7,0,0,5,0,3,0},
-        {5,6,0,0,1,0,0,4,7}};
-    private static final int[][] PUZZLE_2 = {
-        {0,1,9,0,0,2,8,0,3},
-        {8,3,0,5,0,6,0,0,1},
-        {0,0,4,0,3,0,0,0,6},
-        {0,2,0,0,0,0,5,6,4},
-        {1,0,0,0,0,0,0,0,7},
-        {7,9,6,0,0,0,0,3,0},
-        {4,0,0,0,8,0,6,0,0},
-        {5,0,0,4,0,9,0,7,8},
-        {9,0,1,6,0,0,3,4,0}};
+
+    public static final int SYMMETRY_NONE = 0;
+    public static final int SYMMETRY_ROTATIONAL = 1;
+    public static final int SYMMETRY_MIRROR = 2;
+    public static final int SYMMETRY_DIAGONAL = 3;
+    /** Time in milliseconds a new game may spend looking for a puzzle. */
+    private static final long NEW_GAME_BUDGET = 500;
+    /**
+     * Time in milliseconds a new game may spend removing clues from a
+     * puzzle that is not rated, by order.
+     */
+    private static final long[] LARGE_BOARD_BUDGETS = {0, 0, 100, 500, 2000, 5000};
+    /** Search nodes a uniqueness test of a large board may take. */
+    private static final int LARGE_BOARD_NODE_LIMIT = 50;
+    /** Search nodes per cell filling a variant grid may take before a retry. */
+    private static final int FILL_NODES_PER_CELL = 2;
+    private static SudokuGenerator self;
+    private final Random random;
+    private final Solver solver;
+    // The solver, if it can test a removal without a full count.
+    private final BitmaskSolver bitmaskSolver;
+    private final DifficultyRater rater = new DifficultyRater();
+    private final int boardOrder;
+    private final int size;
+    private final int cells;
+    private final int[] digits;
+    private final int[] order;
+    private int variantType = Variant.CLASSIC;
+    // Variant of the last puzzle, null for classic sudoku.
+    private Variant variant;
+    // Solution of the last puzzle.
+    private int[][] solution;
+    private int generated = 0;
+    private long generationMillis = 0;
+
+    public SudokuGenerator() {
+        this(new Random(System.currentTimeMillis()), new BitmaskSolver());
+    }
+
+    /**
+     * @param random source of randomness, seeded by the caller for
+     *               reproducible puzzles
+     * @param solver solver used to fill the grid and to test uniqueness
+     */
+    public SudokuGenerator(Random random, Solver solver) {
+        this(random, solver, 3);
+    }
+
+    /**
+     * @param random source of randomness
+     * @param solver solver for boards of the given order
+     * @param boardOrder boxes per side of the board, see BoardGeometry
+     */
+    public SudokuGenerator(Random random, Solver solver, int boardOrder) {
+        this.random = random;
+        this.solver = solver;
+        bitmaskSolver = solver instanceof BitmaskSolver ? (BitmaskSolver) solver : null;
+        this.boardOrder = boardOrder;
+        size = boardOrder * boardOrder;
+        cells = size * size;
+        digits = new int[size];
+        order = new int[cells];
+    }
 
     public static int[][] newPuzzle() {
-        return randomPuzzle();
-    }
-
-    private static int[][] randomPuzzle() {
-        Random r = new Random(System.currentTimeMillis());
-        int[][] template;
-        switch(r.nextInt(3)) {
-            case 0:
-                template = PUZZLE_0;
-                break;
-            case 1:
-                template = PUZZLE_1;
-                break;
-            default:
-                template = PUZZLE_2;
-                break;
-        }
-        Vector numbera = new Vector(9);
-        for(int n = 1; n <= 9; n++) {
-            numbera.addElement(new Integer(n));
-        }
-        int[] p = new int[10];
-        p[0] = 0;
-        for(int i = 1; i < p.length; i++) {
-            int j = r.nextInt(numbera.size());
-            p[i] = ((Integer) numbera.elementAt(j)).intValue();
-            numbera.removeElementAt(j);
-        }
-        int[][] puzzle = new int[9][9];
-        for(int i = 0; i < 9; i++) {
-            for(int j = 0; j < 9; j++) {
-                puzzle[i][j] = p[template[i][j]];
+        return newPuzzle(DifficultyRater.DIFFICULTY_MEDIUM);
+    }
+
+    /**
+     * Generates a puzzle of the given difficulty within the new game time
+     * budget.
+     * @param difficulty one of the DifficultyRater.DIFFICULTY_ constants
+     * @return the puzzle, 0 for empty cells
+     */
+    public static synchronized int[][] newPuzzle(int difficulty) {
+        if (self == null) {
+            self = new SudokuGenerator();
+        }
+        return self.generate(SYMMETRY_ROTATIONAL, difficulty,
+                             System.currentTimeMillis() + NEW_GAME_BUDGET);
+    }
+
+    /**
+     * Generates a puzzle for a board of any order within the new game time
+     * budget. 9x9 puzzles are of the given difficulty; larger ones get as
+     * many clues removed as the budget of their order allows.
+     * @param boardOrder boxes per side of the board, see BoardGeometry
+     * @param difficulty one of the DifficultyRater.DIFFICULTY_ constants
+     * @return the puzzle, 0 for empty cells
+     */
+    public static int[][] newPuzzle(int boardOrder, int difficulty) {
+        if (boardOrder == 3) {
+            return newPuzzle(difficulty);
+        }
+        return forNewGames(boardOrder, Variant.CLASSIC).newGame(difficulty);
+    }
+
+    /**
+     * Creates a generator for new games on a board of any order and
+     * variant. Uniqueness tests on large boards are limited, so that a new
+     * game never takes too long.
+     * @param boardOrder boxes per side of the board, see BoardGeometry
+     * @param variantType one of the Variant constants
+     * @return the generator
+     */
+    public static SudokuGenerator forNewGames(int boardOrder, int variantType) {
+        final BitmaskSolver solver = new BitmaskSolver(boardOrder);
+        if (boardOrder > 3) {
+            solver.setNodeLimit(LARGE_BOARD_NODE_LIMIT);
+        }
+        final SudokuGenerator generator = new SudokuGenerator(
+                new Random(System.currentTimeMillis()), solver, boardOrder);
+        generator.setVariantType(variantType);
+        return generator;
+    }
+
+    /**
+     * Generates a puzzle within the new game time budget. Classic 9x9
+     * puzzles are of the given difficulty; others get as many clues removed
+     * as the budget of their order allows. The variant of the puzzle is
+     * then given by getVariant().
+     * @param difficulty one of the DifficultyRater.DIFFICULTY_ constants
+     * @return the puzzle, 0 for empty cells
+     */
+    public int[][] newGame(int difficulty) {
+        final long now = System.currentTimeMillis();
+        if (boardOrder == 3 && variantType == Variant.CLASSIC) {
+            return generate(SYMMETRY_ROTATIONAL, difficulty, now + NEW_GAME_BUDGET);
+        }
+        return generate(SYMMETRY_ROTATIONAL, now + LARGE_BOARD_BUDGETS[boardOrder]);
+    }
+
+    /**
+     * Sets the variant of the puzzles generated from now on.
+     * @param variantType one of the Variant constants
+     */
+    public void setVariantType(int variantType) {
+        if (variantType != Variant.CLASSIC && bitmaskSolver == null) {
+            throw new IllegalStateException("Variants need BitmaskSolver");
+        }
+        if (!Variant.isSupported(variantType, boardOrder)) {
+            throw new IllegalArgumentException("Variant not supported on this board");
+        }
+        this.variantType = variantType;
+        if (variantType == Variant.DIAGONAL || variantType == Variant.WINDOKU) {
+            variant = Variant.create(variantType, BoardGeometry.get(boardOrder));
+        }
+        else {
+            variant = null;
+        }
+    }
+
+    /**
+     * @return the solution of the last generated puzzle as
+     *         solution[row][col], like the puzzle
+     */
+    public int[][] getSolution() {
+        return solution;
+    }
+
+    /**
+     * @return the variant of the last generated puzzle, null for classic
+     *         sudoku
+     */
+    public Variant getVariant() {
+        return variant;
+    }
+
+    /**
+     * Generates puzzles until one is rated at the given difficulty. If the
+     * deadline passes first, the closest match found so far is returned.
+     * At least one puzzle is always generated.
+     * @param symmetry one of the SYMMETRY_ constants
+     * @param difficulty one of the DifficultyRater.DIFFICULTY_ constants
+     * @param deadline time in milliseconds at which to stop looking
+     * @return the puzzle, 0 for empty cells
+     */
+    public int[][] generate(int symmetry, int difficulty, long deadline) {
+        if (boardOrder != 3 || variantType != Variant.CLASSIC) {
+            return generate(symmetry, deadline);
+        }
+        int[][] best = null;
+        int[][] bestSolution = null;
+        int bestDistance = Integer.MAX_VALUE;
+        do {
+            final int[][] grid = generate(symmetry);
+            final int rating = rater.rate(grid, deadline);
+            if (rating == difficulty) {
+                return grid;
+            }
+            final int distance = rating == DifficultyRater.DIFFICULTY_UNKNOWN
+                    ? Integer.MAX_VALUE - 1 : Math.abs(rating - difficulty);
+            if (distance < bestDistance) {
+                best = grid;
+                bestSolution = solution;
+                bestDistance = distance;
+            }
+        } while (System.currentTimeMillis() < deadline);
+        solution = bestSolution;
+        return best;
+    }
+
+    /**
+     * Generates a puzzle with a unique solution.
+     * @param symmetry one of the SYMMETRY_ constants
+     * @return the puzzle, 0 for empty cells
+     */
+    public int[][] generate(int symmetry) {
+        return generate(symmetry, Long.MAX_VALUE);
+    }
+
+    /**
+     * Generates a puzzle with a unique solution. Clues are removed only
+     * until the deadline, so the puzzle may be easier than it could be.
+     * @param symmetry one of the SYMMETRY_ constants
+     * @param deadline time in milliseconds at which to stop removing clues
+     * @return the puzzle, 0 for empty cells
+     */
+    public int[][] generate(int symmetry, long deadline) {
+        final long start = System.currentTimeMillis();
+        final int[][] grid = newSolution();
+        if (variantType == Variant.KILLER) {
+            variant = KillerVariant.fromSolution(grid, random);
+        }
+        solution = new int[size][];
+        for (int row = 0; row < size; row++) {
+            solution[row] = new int[size];
+            System.arraycopy(grid[row], 0, solution[row], 0, size);
+        }
+        if (bitmaskSolver != null) {
+            bitmaskSolver.setVariant(variant);
+        }
+        removeClues(grid, symmetry, deadline);
+        if (bitmaskSolver != null) {
+            bitmaskSolver.setVariant(null);
+        }
+        generationMillis += System.currentTimeMillis() - start;
+        generated++;
+        return grid;
+    }
+
+    /**
+     * Fills a random solution grid. The three boxes on the diagonal do not
+     * share any row or column, so they are filled with independent random
+     * permutations and the solver completes the rest.
+     * @return a full valid grid
+     */
+    public int[][] newSolution() {
+        if (variant != null && variantType != Variant.KILLER) {
+            return newVariantSolution();
+        }
+        if (boardOrder != 3) {
+            return newPatternSolution();
+        }
+        final int[][] grid = new int[size][size];
+        for (int box = 0; box < size; box += 4) {
+            shuffleDigits();
+            final int rowOffset = box / 3 * 3;
+            final int colOffset = box % 3 * 3;
+            for (int i = 0; i < size; i++) {
+                grid[rowOffset + i / 3][colOffset + i % 3] = digits[i];
+            }
+        }
+        solver.solve(grid);
+        return grid;
+    }
+
+    /**
+     * Fills a random solution grid that keeps the rules of the variant. The
+     * first box gets a random permutation, which no variant unit can
+     * contradict, and the solver completes the rest trying the candidates
+     * in random order. The search is short and starts over if it runs out
+     * of nodes, since a random start rarely needs many.
+     * @return a full valid grid
+     */
+    private int[][] newVariantSolution() {
+        final int[][] grid = new int[size][size];
+        final int nodeLimit = bitmaskSolver.getNodeLimit();
+        bitmaskSolver.setNodeLimit(FILL_NODES_PER_CELL * cells);
+        bitmaskSolver.setVariant(variant);
+        bitmaskSolver.setRandom(random);
+        do {
+            shuffleDigits();
+            for (int row = 0; row < size; row++) {
+                for (int col = 0; col < size; col++) {
+                    grid[row][col] = row < boardOrder && col < boardOrder
+                            ? digits[row * boardOrder + col] : 0;
+                }
+            }
+        } while (!bitmaskSolver.solve(grid));
+        bitmaskSolver.setRandom(null);
+        bitmaskSolver.setVariant(null);
+        bitmaskSolver.setNodeLimit(nodeLimit);
+        return grid;
+    }
+
+    /**
+     * Builds a solution grid from the pattern that shifts every row of a
+     * band by one box width and every band by one cell. The digits, the
+     * rows within each band, the bands, the columns within each stack and
+     * the stacks are then shuffled, all of which keep the grid valid.
+     * @return a full valid grid
+     */
+    private int[][] newPatternSolution() {
+        final int[] rows = new int[size];
+        final int[] cols = new int[size];
+        shuffleLines(rows);
+        shuffleLines(cols);
+        shuffleDigits();
+        final int[][] grid = new int[size][size];
+        for (int row = 0; row < size; row++) {
+            final int r = rows[row];
+            for (int col = 0; col < size; col++) {
+                final int c = cols[col];
+                grid[row][col] = digits[(r % boardOrder * boardOrder + r / boardOrder + c)
+                                        % size];
+            }
+        }
+        return grid;
+    }
+
+    /**
+     * Fills the array with a random order of lines that keeps every line in
+     * a band of its own band.
+     */
+    private void shuffleLines(int[] lines) {
+        final int[] bands = new int[boardOrder];
+        final int[] offsets = new int[boardOrder];
+        for (int i = 0; i < boardOrder; i++) {
+            bands[i] = i;
+        }
+        shuffle(bands, random);
+        for (int band = 0; band < boardOrder; band++) {
+            for (int i = 0; i < boardOrder; i++) {
+                offsets[i] = i;
+            }
+            shuffle(offsets, random);
+            for (int i = 0; i < boardOrder; i++) {
+                lines[band * boardOrder + i] = bands[band] * boardOrder + offsets[i];
+            }
+        }
+    }
+
+    private void removeClues(int[][] grid, int symmetry, long deadline) {
+        for (int i = 0; i < cells; i++) {
+            order[i] = i;
+        }
+        shuffle(order, random);
+        for (int i = 0; i < cells && System.currentTimeMillis() < deadline; i++) {
+            final int cell = order[i];
+            final int mate = getMate(cell, symmetry);
+            final int row = cell / size;
+            final int col = cell % size;
+            final int mateRow = mate / size;
+            final int mateCol = mate % size;
+            final int n = grid[row][col];
+            final int mateN = grid[mateRow][mateCol];
+            if (n == 0) {
+                continue;
             }
+            grid[row][col] = 0;
+            grid[mateRow][mateCol] = 0;
+            if (!isStillUnique(grid, row, col, n, mateRow, mateCol, mateN)) {
+                grid[row][col] = n;
+                grid[mateRow][mateCol] = mateN;
+            }
+        }
+    }
+
+    /**
+     * Tests whether the puzzle still has one solution after two clues were
+     * removed from it. Any other solution must differ from the known one in
+     * a removed cell, so with BitmaskSolver it is enough to look for a
+     * solution with another digit in either cell, which propagation mostly
+     * rules out at once. That keeps the test fast on large boards, where
+     * counting from scratch gets expensive.
+     */
+    private boolean isStillUnique(int[][] grid, int row, int col, int n,
+                                  int mateRow, int mateCol, int mateN) {
+        if (bitmaskSolver == null) {
+            return solver.countSolutions(grid, 2) == 1;
+        }
+        if (bitmaskSolver.hasSolutionWithout(grid, row, col, n)) {
+            return false;
+        }
+        if (mateRow == row && mateCol == col) {
+            return true;
+        }
+        grid[row][col] = n;
+        final boolean unique = !bitmaskSolver.hasSolutionWithout(grid, mateRow, mateCol, mateN);
+        grid[row][col] = 0;
+        return unique;
+    }
+
+    /**
+     * @return the cell that must be removed together with the given cell
+     */
+    private int getMate(int cell, int symmetry) {
+        final int row = cell / size;
+        final int col = cell % size;
+        switch (symmetry) {
+            case SYMMETRY_ROTATIONAL:
+                return cells - 1 - cell;
+            case SYMMETRY_MIRROR:
+                return row * size + size - 1 - col;
+            case SYMMETRY_DIAGONAL:
+                return col * size + row;
+            default:
+                return cell;
+        }
+    }
+
+    private void shuffleDigits() {
+        for (int i = 0; i < size; i++) {
+            digits[i] = i + 1;
+        }
+        shuffle(digits, random);
+    }
+
+    /**
+     * Shuffles the array in place with the Fisher-Yates algorithm.
+     */
+    static void shuffle(int[] a, Random random) {
+        for (int i = a.length - 1; i > 0; i--) {
+            final int j = random.nextInt(i + 1);
+            final int tmp = a[i];
+            a[i] = a[j];
+            a[j] = tmp;
+        }
+    }
+
+    public int getGeneratedCount() {
+        return generated;
+    }
+
+    /**
+     * @return the average generation throughput so far, in puzzles per second
+     */
+    public int getPuzzlesPerSecond() {
+        if (generationMillis == 0) {
+            return 0;
         }
-        return puzzle;
+        return (int) (generated * 1000L / generationMillis);
     }
 }
@@ -0,0 +1,747 @@
+/**
+* Copyright (c) 2012-2014 Microsoft Mobile. All rights reserved.
+* Nokia and Nokia Connecting People are registered trademarks of Nokia Corporation. 
+* Oracle and Java are trademarks or registered trademarks of Oracle and/or its
+* affiliates. Other product and company names mentioned herein may be trademarks
+* or trade names of their respective owners. 
+* See LICENSE.TXT for license information.
+*/
+
+package com.nokia.example.sudokumaster;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * State of a sudoku game without any UI. Each cell is one byte that holds
+ * the value in the low bits, a flag for the numbers of the puzzle and a
+ * flag for the cells that conflicted with the last rejected number.
+ * Cells are addressed by column and row, like in SudokuView. The moves
+ * are kept in a MoveJournal for undo and redo.
+ *
+ * Every cell also has pencil marks, a bitmask of the candidate digits as
+ * bits 1-9. Placing a digit removes it from the marks of the peers of the
+ * cell. In auto notes mode the marks of every empty cell are kept at
+ * the digits that its row, column and block allow.
+ *
+ * The board may be of any order from BoardGeometry, 4x4 to 25x25; its
+ * size is taken from the puzzle of a new game. Digits above 9 use the same
+ * bitmasks, which hold up to 31 digits in an int.
+ *
+ * A game may have a Variant, whose units get digit masks of their own
+ * after the blocks. A number is rejected if any unit of the cell does not
+ * allow it, and only the units of the changed cell are updated on a move.
+ *
+ * The solution is kept with the puzzle, one byte per cell, together with
+ * the number of filled cells that differ from it. Telling whether the
+ * game is won, or whether a cell is wrong, is then a comparison instead
+ * of a search. Only puzzles that come without their solution, such as
+ * games saved by older versions, are solved once when they are loaded.
+ */
+public class SudokuModel {
+
+    public static final int VALUE_MASK = 0x1f;
+    public static final int GIVEN = 0x20;
+    public static final int CONFLICT = 0x40;
+    /** First byte of a board written by this version. */
+    private static final int FORMAT_MARK = -3;
+    /** First byte of a board written before the solution was stored. */
+    private static final int NO_SOLUTION_FORMAT_MARK = -2;
+    /** First byte of a board written before variants. */
+    private static final int CLASSIC_FORMAT_MARK = -1;
+    private BoardGeometry geometry = BoardGeometry.get(3);
+    private int size = geometry.size;
+    private byte[] cells = new byte[geometry.cells];
+    // Digits present in each unit as bits 1-size. Rows are units
+    // 0 to size - 1, then come the columns, the blocks and the units of
+    // the variant.
+    private int[] masks = new int[3 * size];
+    private Variant variant;
+    private int filled = 0;
+    // Solution of the puzzle, indexed like the cells, or all 0 if the
+    // puzzle could not be solved.
+    private byte[] solution = new byte[geometry.cells];
+    private boolean solutionKnown = false;
+    // Filled cells that differ from the solution.
+    private int wrong = 0;
+    private int conflicts = 0;
+    private int moves = 0;
+    private final MoveJournal journal = new MoveJournal();
+    private int[] notes = new int[geometry.cells];
+    private boolean autoNotes = false;
+    // True if the board was read from the format of older versions.
+    private boolean legacyFormat = false;
+    private Listener listener;
+
+    public void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Starts a new game.
+     * @param puzzle the puzzle as puzzle[col][row], 0 for empty cells. The
+     *        size of the board is the length of the array.
+     */
+    public void newGame(int[][] puzzle) {
+        newGame(puzzle, null, null);
+    }
+
+    /**
+     * Starts a new game of a variant.
+     * @param puzzle the puzzle as puzzle[col][row], 0 for empty cells
+     * @param variant the variant, or null for classic sudoku
+     * @param solution the solution as solution[col][row], or null to have
+     *        the puzzle solved here
+     */
+    public void newGame(int[][] puzzle, Variant variant, int[][] solution) {
+        setGeometry(BoardGeometry.forSize(puzzle.length));
+        setVariant(variant);
+        for (int col = 0; col < size; col++) {
+            for (int row = 0; row < size; row++) {
+                final int n = puzzle[col][row];
+                cells[index(col, row)] = (byte) (n > 0 ? n | GIVEN : 0);
+            }
+        }
+        if (solution != null) {
+            for (int col = 0; col < size; col++) {
+                for (int row = 0; row < size; row++) {
+                    this.solution[index(col, row)] = (byte) solution[col][row];
+                }
+            }
+            solutionKnown = true;
+        }
+        else {
+            solve();
+        }
+        restart();
+    }
+
+    private void setGeometry(BoardGeometry geometry) {
+        if (geometry != this.geometry) {
+            this.geometry = geometry;
+            size = geometry.size;
+            cells = new byte[geometry.cells];
+            notes = new int[geometry.cells];
+            solution = new byte[geometry.cells];
+            journal.setWide(geometry.order > 3);
+        }
+    }
+
+    /**
+     * Solves the givens for the solution of a puzzle that came without it.
+     */
+    private void solve() {
+        final int[][] grid = new int[size][size];
+        for (int i = 0; i < cells.length; i++) {
+            grid[i / size][i % size] = (cells[i] & GIVEN) != 0 ? cells[i] & VALUE_MASK : 0;
+        }
+        final BitmaskSolver solver = new BitmaskSolver(geometry.order);
+        solver.setVariant(variant);
+        solutionKnown = solver.solve(grid);
+        for (int i = 0; i < cells.length; i++) {
+            solution[i] = (byte) (solutionKnown ? grid[i / size][i % size] : 0);
+        }
+    }
+
+    private void setVariant(Variant variant) {
+        if (variant != null && variant.getGeometry() != geometry) {
+            throw new IllegalArgumentException("Variant of another board");
+        }
+        this.variant = variant;
+        masks = new int[3 * size + (variant != null ? variant.getUnitCount() : 0)];
+    }
+
+    /**
+     * @return the variant of the game, null for classic sudoku
+     */
+    public Variant getVariant() {
+        return variant;
+    }
+
+    public BoardGeometry getGeometry() {
+        return geometry;
+    }
+
+    /**
+     * @return the number of cells per side of the board
+     */
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * Clears the numbers set by the user and the move history.
+     */
+    public void restart() {
+        for (int i = 0; i < cells.length; i++) {
+            cells[i] = (byte) ((cells[i] & GIVEN) != 0 ? cells[i] & (VALUE_MASK | GIVEN) : 0);
+        }
+        moves = 0;
+        journal.clear();
+        for (int i = 0; i < notes.length; i++) {
+            notes[i] = 0;
+        }
+        recount();
+    }
+
+    public int getValue(int col, int row) {
+        return cells[index(col, row)] & VALUE_MASK;
+    }
+
+    public boolean isGiven(int col, int row) {
+        return (cells[index(col, row)] & GIVEN) != 0;
+    }
+
+    public boolean isConflict(int col, int row) {
+        return (cells[index(col, row)] & CONFLICT) != 0;
+    }
+
+    public boolean hasConflicts() {
+        return conflicts > 0;
+    }
+
+    /**
+     * @return the number of the solution in the cell, or 0 if the puzzle
+     *         has no solution
+     */
+    public int getSolution(int col, int row) {
+        return solution[index(col, row)];
+    }
+
+    /**
+     * @return true if the cell holds a number that differs from the solution
+     */
+    public boolean isMistake(int col, int row) {
+        final int i = index(col, row);
+        final int n = cells[i] & VALUE_MASK;
+        return solutionKnown && n > 0 && n != solution[i];
+    }
+
+    /**
+     * @return the number of filled cells that differ from the solution
+     */
+    public int getMistakes() {
+        return wrong;
+    }
+
+    /**
+     * Sets a number if it does not conflict with the other numbers in the
+     * same row, column or block, or break a rule of the variant. If it
+     * does, the conflicting cells are flagged instead.
+     * @param col column of the cell
+     * @param row row of the cell
+     * @param n the number, or 0 to clear the cell
+     * @return true if the cell changed
+     */
+    public boolean setNumber(int col, int row, int n) {
+        clearConflicts();
+        final int i = index(col, row);
+        final int newNumber = n > size || n < 1 ? 0 : n;
+        final int old = cells[i] & VALUE_MASK;
+        if ((cells[i] & GIVEN) != 0 || old == newNumber) {
+            return false;
+        }
+        final int units = masks[row] | masks[size + col] | masks[2 * size + block(i)];
+        if (newNumber > 0 && ((units & 1 << newNumber) != 0
+                || !variantAllows(i, old, newNumber))) {
+            flagConflicts(col, row, newNumber);
+            return false;
+        }
+        journal.record(i, old, newNumber);
+        apply(i, newNumber);
+        return true;
+    }
+
+    /**
+     * Reverts the latest move. Undoing counts as a move.
+     * @return the index of the changed cell, row * size + col, or -1 if there
+     *         was nothing to undo
+     */
+    public int undo() {
+        final int record = journal.undo();
+        if (record < 0) {
+            return -1;
+        }
+        clearConflicts();
+        apply(MoveJournal.getCell(record), MoveJournal.getOldValue(record));
+        return MoveJournal.getCell(record);
+    }
+
+    /**
+     * Applies the latest undone move again. Redoing counts as a move.
+     * @return the index of the changed cell, row * size + col, or -1 if there
+     *         was nothing to redo
+     */
+    public int redo() {
+        final int record = journal.redo();
+        if (record < 0) {
+            return -1;
+        }
+        clearConflicts();
+        apply(MoveJournal.getCell(record), MoveJournal.getNewValue(record));
+        return MoveJournal.getCell(record);
+    }
+
+    public MoveJournal getJournal() {
+        return journal;
+    }
+
+    /**
+     * @return the pencil marks of the cell as bits 1 to the board size
+     */
+    public int getNotes(int col, int row) {
+        return notes[index(col, row)];
+    }
+
+    /**
+     * Adds or removes a pencil mark of an empty cell.
+     * @param n the digit
+     * @return true if the marks changed
+     */
+    public boolean toggleNote(int col, int row, int n) {
+        final int i = index(col, row);
+        if (n < 1 || n > size || (cells[i] & VALUE_MASK) != 0) {
+            return false;
+        }
+        notes[i] ^= 1 << n;
+        if (listener != null) {
+            listener.onCellChanged(col, row);
+        }
+        return true;
+    }
+
+    /**
+     * Removes all pencil marks of a cell.
+     */
+    public void clearNotes(int col, int row) {
+        final int i = index(col, row);
+        if (notes[i] != 0) {
+            notes[i] = 0;
+            if (listener != null) {
+                listener.onCellChanged(col, row);
+            }
+        }
+    }
+
+    public boolean isAutoNotes() {
+        return autoNotes;
+    }
+
+    /**
+     * Turns auto notes mode on or off. Turning it on fills in the marks of
+     * every empty cell; turning it off leaves the marks as they are.
+     */
+    public void setAutoNotes(boolean autoNotes) {
+        this.autoNotes = autoNotes;
+        if (autoNotes) {
+            fillNotes();
+            if (listener != null) {
+                listener.onBoardChanged();
+            }
+        }
+    }
+
+    private void fillNotes() {
+        for (int i = 0; i < cells.length; i++) {
+            notes[i] = (cells[i] & VALUE_MASK) == 0 ? candidates(i) : 0;
+        }
+    }
+
+    /**
+     * @return the digits that the row, column and block of the cell, and
+     *         the units of the variant, allow
+     */
+    private int candidates(int i) {
+        int m = ~(masks[geometry.row[i]] | masks[size + geometry.col[i]]
+                  | masks[2 * size + block(i)]) & geometry.all;
+        if (variant != null) {
+            final short[] units = variant.cellUnits[i];
+            for (int u = 0; u < units.length; u++) {
+                m &= variant.allowed(units[u], masks[3 * size + units[u]]);
+            }
+        }
+        return m;
+    }
+
+    /**
+     * Tests the units of the variant for a number that replaces the old one.
+     */
+    private boolean variantAllows(int i, int old, int n) {
+        if (variant == null) {
+            return true;
+        }
+        final short[] units = variant.cellUnits[i];
+        for (int u = 0; u < units.length; u++) {
+            final int used = masks[3 * size + units[u]] & ~(1 << old);
+            if ((variant.allowed(units[u], used) & 1 << n) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void apply(int i, int n) {
+        final int col = i % size;
+        final int row = i / size;
+        final int old = cells[i] & VALUE_MASK;
+        remove(col, row, old);
+        cells[i] = (byte) n;
+        add(col, row, n);
+        moves++;
+        final short[] peers = geometry.peers[i];
+        if (n > 0) {
+            notes[i] = 0;
+            for (int p = 0; p < peers.length; p++) {
+                notes[peers[p]] &= ~(1 << n);
+            }
+        }
+        if (autoNotes) {
+            if (n == 0) {
+                notes[i] = candidates(i);
+            }
+            if (old > 0) {
+                // Peers may get the removed digit back as a candidate.
+                for (int p = 0; p < peers.length; p++) {
+                    final int peer = peers[p];
+                    if ((cells[peer] & VALUE_MASK) == 0
+                            && (candidates(peer) & 1 << old) != 0) {
+                        notes[peer] |= 1 << old;
+                    }
+                }
+            }
+        }
+        if (variant != null) {
+            applyVariant(i, n);
+        }
+        if (listener != null) {
+            if (n > 0 || autoNotes) {
+                listener.onBoardChanged();
+            }
+            else {
+                listener.onCellChanged(col, row);
+            }
+        }
+    }
+
+    /**
+     * Updates the pencil marks in the units of the variant after a move.
+     * The digits a unit allows may change beyond the placed or removed one,
+     * like in a Killer cage, so in auto notes mode the marks of the empty
+     * cells of the units are set to their candidates again.
+     */
+    private void applyVariant(int i, int n) {
+        final short[] units = variant.cellUnits[i];
+        for (int u = 0; u < units.length; u++) {
+            final short[] unit = variant.units[units[u]];
+            for (int c = 0; c < unit.length; c++) {
+                final int cell = unit[c];
+                if ((cells[cell] & VALUE_MASK) != 0) {
+                    continue;
+                }
+                if (autoNotes) {
+                    notes[cell] = candidates(cell);
+                }
+                else if (n > 0) {
+                    notes[cell] &= ~(1 << n);
+                }
+            }
+        }
+    }
+
+    /**
+     * Clears the conflict flags.
+     */
+    public void clearConflicts() {
+        if (conflicts == 0) {
+            return;
+        }
+        for (int i = 0; i < cells.length; i++) {
+            if ((cells[i] & CONFLICT) != 0) {
+                cells[i] &= ~CONFLICT;
+                if (listener != null) {
+                    listener.onCellChanged(i % size, i / size);
+                }
+            }
+        }
+        conflicts = 0;
+    }
+
+    public boolean isComplete() {
+        return filled == cells.length;
+    }
+
+    /**
+     * @return true if every cell holds the number of the solution. Without
+     *         a solution, a complete board counts as solved.
+     */
+    public boolean isSolved() {
+        return filled == cells.length && wrong == 0;
+    }
+
+    public int getEmpty() {
+        return cells.length - filled;
+    }
+
+    public int getMoves() {
+        return moves;
+    }
+
+    public void setMoves(int moves) {
+        this.moves = moves;
+    }
+
+    /**
+     * Writes the board: a mark that tells it apart from the format of
+     * older versions, the order of the board, one byte per cell, row by
+     * row, with the value and the flag for the numbers of the puzzle, the
+     * variant and the solution. The solution takes four bits per cell on
+     * boards up to 9x9 and a byte per cell on larger ones.
+     * @param dout destination stream
+     */
+    public void write(DataOutputStream dout) throws IOException {
+        dout.writeByte(FORMAT_MARK);
+        dout.writeByte(geometry.order);
+        for (int i = 0; i < cells.length; i++) {
+            dout.writeByte(cells[i] & (VALUE_MASK | GIVEN));
+        }
+        if (variant != null) {
+            variant.write(dout);
+        }
+        else {
+            dout.writeByte(Variant.CLASSIC);
+        }
+        dout.writeBoolean(solutionKnown);
+        if (solutionKnown && size < 16) {
+            for (int i = 0; i < cells.length; i += 2) {
+                final int low = i + 1 < cells.length ? solution[i + 1] : 0;
+                dout.writeByte(solution[i] << 4 | low);
+            }
+        }
+        else if (solutionKnown) {
+            dout.write(solution);
+        }
+    }
+
+    /**
+     * Writes the pencil marks and the auto notes mode.
+     * @param dout destination stream
+     */
+    public void writeNotes(DataOutputStream dout) throws IOException {
+        dout.writeBoolean(autoNotes);
+        for (int i = 0; i < notes.length; i++) {
+            dout.writeInt(notes[i]);
+        }
+    }
+
+    /**
+     * Reads the pencil marks written by writeNotes().
+     * @param din source stream
+     */
+    public void readNotes(DataInputStream din) throws IOException {
+        autoNotes = din.readBoolean();
+        for (int i = 0; i < notes.length; i++) {
+            notes[i] = (legacyFormat ? din.readShort() : din.readInt()) & geometry.all;
+        }
+        if (listener != null) {
+            listener.onBoardChanged();
+        }
+    }
+
+    /**
+     * Reads the cells written by write(), or by older versions, which
+     * wrote a 9x9 board column by column, two bytes per cell, or without
+     * the variant or the solution. The move history and the pencil marks
+     * are cleared.
+     * @param din source stream
+     */
+    public void read(DataInputStream din) throws IOException {
+        final int first = din.readByte();
+        legacyFormat = first != FORMAT_MARK && first != NO_SOLUTION_FORMAT_MARK
+                       && first != CLASSIC_FORMAT_MARK;
+        if (legacyFormat) {
+            setGeometry(BoardGeometry.get(3));
+            setVariant(null);
+            for (int col = 0; col < 9; col++) {
+                for (int row = 0; row < 9; row++) {
+                    final int given = col + row == 0 ? first : din.readByte();
+                    final int n = din.readByte();
+                    cells[index(col, row)] = (byte) (given > 0 ? given | GIVEN
+                                                     : Math.max(n, 0));
+                }
+            }
+        }
+        else {
+            final int order = din.readByte();
+            if (order < BoardGeometry.MIN_ORDER || order > BoardGeometry.MAX_ORDER) {
+                throw new IOException("Bad board order");
+            }
+            setGeometry(BoardGeometry.get(order));
+            for (int i = 0; i < cells.length; i++) {
+                final int cell = din.readByte() & (VALUE_MASK | GIVEN);
+                cells[i] = (byte) ((cell & VALUE_MASK) > size ? 0 : cell);
+            }
+            setVariant(first != CLASSIC_FORMAT_MARK ? Variant.read(din, geometry) : null);
+        }
+        if (first == FORMAT_MARK) {
+            readSolution(din);
+        }
+        else {
+            solve();
+        }
+        journal.clear();
+        autoNotes = false;
+        for (int i = 0; i < notes.length; i++) {
+            notes[i] = 0;
+        }
+        recount();
+    }
+
+    private void readSolution(DataInputStream din) throws IOException {
+        solutionKnown = din.readBoolean();
+        if (solutionKnown && size < 16) {
+            for (int i = 0; i < cells.length; i += 2) {
+                final int b = din.readByte();
+                solution[i] = (byte) ((b >> 4) & 0xf);
+                if (i + 1 < cells.length) {
+                    solution[i + 1] = (byte) (b & 0xf);
+                }
+            }
+        }
+        else if (solutionKnown) {
+            din.readFully(solution);
+        }
+        for (int i = 0; i < cells.length; i++) {
+            if (!solutionKnown || solution[i] < 1 || solution[i] > size) {
+                solution[i] = 0;
+                solutionKnown = false;
+            }
+        }
+    }
+
+    private int index(int col, int row) {
+        return row * size + col;
+    }
+
+    private int block(int i) {
+        return geometry.box[i];
+    }
+
+    private void flagConflicts(int col, int row, int n) {
+        final int order = geometry.order;
+        final int blockCol = col / order * order;
+        final int blockRow = row / order * order;
+        for (int i = 0; i < size; i++) {
+            flagConflict(i, row, n);
+            flagConflict(col, i, n);
+            flagConflict(blockCol + i % order, blockRow + i / order, n);
+        }
+        if (variant != null) {
+            flagVariantConflicts(index(col, row), n);
+        }
+    }
+
+    /**
+     * Flags the cells with the same number in the units of the variant. A
+     * unit that has no such cell but still does not allow the number, like
+     * a Killer cage with the wrong sum, gets all its numbers flagged, and
+     * the cell itself if the unit is empty.
+     */
+    private void flagVariantConflicts(int i, int n) {
+        final int old = cells[i] & VALUE_MASK;
+        final short[] units = variant.cellUnits[i];
+        for (int u = 0; u < units.length; u++) {
+            final int used = masks[3 * size + units[u]] & ~(1 << old);
+            final boolean duplicate = (used & 1 << n) != 0;
+            if (!duplicate && (variant.allowed(units[u], used) & 1 << n) != 0) {
+                continue;
+            }
+            final short[] unit = variant.units[units[u]];
+            for (int c = 0; c < unit.length; c++) {
+                final int cell = unit[c];
+                final int value = cells[cell] & VALUE_MASK;
+                if (cell != i && (duplicate ? value == n : value > 0)) {
+                    flagConflict(cell % size, cell / size, value);
+                }
+            }
+            if ((used & ~(1 << n)) == 0) {
+                flagConflict(i % size, i / size, old);
+            }
+        }
+    }
+
+    private void flagConflict(int col, int row, int n) {
+        final int i = index(col, row);
+        if ((cells[i] & VALUE_MASK) == n && (cells[i] & CONFLICT) == 0) {
+            cells[i] |= CONFLICT;
+            conflicts++;
+            if (listener != null) {
+                listener.onCellChanged(col, row);
+            }
+        }
+    }
+
+    private void add(int col, int row, int n) {
+        if (n > 0) {
+            masks[row] |= 1 << n;
+            masks[size + col] |= 1 << n;
+            masks[2 * size + block(index(col, row))] |= 1 << n;
+            if (variant != null) {
+                final short[] units = variant.cellUnits[index(col, row)];
+                for (int u = 0; u < units.length; u++) {
+                    masks[3 * size + units[u]] |= 1 << n;
+                }
+            }
+            if (solutionKnown && solution[index(col, row)] != n) {
+                wrong++;
+            }
+            filled++;
+        }
+    }
+
+    private void remove(int col, int row, int n) {
+        if (n > 0) {
+            masks[row] &= ~(1 << n);
+            masks[size + col] &= ~(1 << n);
+            masks[2 * size + block(index(col, row))] &= ~(1 << n);
+            if (variant != null) {
+                final short[] units = variant.cellUnits[index(col, row)];
+                for (int u = 0; u < units.length; u++) {
+                    masks[3 * size + units[u]] &= ~(1 << n);
+                }
+            }
+            if (solutionKnown && solution[index(col, row)] != n) {
+                wrong--;
+            }
+            filled--;
+        }
+    }
+
+    /**
+     * Rebuilds the digit masks and the number of filled cells after the
+     * whole board has changed.
+     */
+    private void recount() {
+        for (int i = 0; i < masks.length; i++) {
+            masks[i] = 0;
+        }
+        filled = 0;
+        wrong = 0;
+        conflicts = 0;
+        for (int i = 0; i < cells.length; i++) {
+            cells[i] &= ~CONFLICT;
+            add(i % size, i / size, cells[i] & VALUE_MASK);
+        }
+        if (autoNotes) {
+            fillNotes();
+        }
+        if (listener != null) {
+            listener.onBoardChanged();
+        }
+    }
+
+    public static interface Listener {
+        void onCellChanged(int col, int row);
+        void onBoardChanged();
+    }
+}
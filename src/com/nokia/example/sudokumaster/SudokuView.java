@@ -14,53 +14,151 @@ import java.io.ByteArrayOutputStream;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
+import javax.microedition.lcdui.Font;
 import javax.microedition.lcdui.Graphics;
 import javax.microedition.lcdui.Image;
 import javax.microedition.lcdui.game.TiledLayer;
 
 /**
  * View for the sudoku game board, which is implemented
- * with TiledLayer.
+ * with TiledLayer. The game state is kept in a SudokuModel,
+ * which the view observes. A hint is shown by highlighting the
+ * cells it is based on, framing the cells it changes and naming
+ * the technique in a banner over the board.
+ *
+ * Boards of every order are drawn with the same tiles, scaled to the cell
+ * size of the board when it is not 9x9. Digits above 9 are drawn as
+ * letters.
+ *
+ * The rules of a Variant are drawn over the tiles: its cells are shaded
+ * with a translucent color, its cages outlined with dotted lines and their
+ * sums written in the corner of the first cell.
+ *
+ * Checking the progress marks the numbers that differ from the solution
+ * until the board changes, and tells how many there are in the banner.
+ *
+ * Changes mark the cells they affect, such as the rows and columns of the
+ * old and the new selection, and only the tiles of those cells are set
+ * again and repainted.
  */
 public class SudokuView
-    extends View {
+    extends View
+    implements SudokuModel.Listener {
 
     private static final int BG0 = 1;
     private static final int BG1 = 2;
     private static final int BG0_HIGHLIGHTED = 3;
     private static final int BG1_HIGHLIGHTED = 4;
     private static final int BG_ERROR = 5;
-    private static final int ANIMATION_DURATION = 20;
+    /** Time in milliseconds the conflicting cells flicker. */
+    private static final long FLASH_DURATION = 400;
     private static final int NUMBER_COLOR = 0x000000ff;
     private static final int PUZZLE_NUMBER_COLOR = 0x00000000;
+    private static final int NOTE_COLOR = 0x00606060;
     private static final int BACKGROUND_COLOR = 0x004e2316;
-    private int[][] numbers = new int[9][9];
-    private int[][] puzzle = new int[9][9];
-    private int[][] animate = new int[9][9];
+    private static final int HINT_COLOR = 0x00ff8000;
+    private static final int HINT_TEXT_COLOR = 0x00ffffff;
+    private static final int VARIANT_SHADE = 0x403060c0;
+    private static final int CAGE_COLOR = 0x00404040;
+    /** Time in milliseconds the hint search may take on each update. */
+    private static final long HINT_BUDGET = 8;
+    private final SudokuModel model = new SudokuModel();
+    // True while the conflicting cells are shown flashed.
+    private volatile boolean flashOn = false;
+    private final Animation flash = new Animation(FLASH_DURATION, Animation.LINEAR) {
+        protected void step(int progress) {
+            // On for the first and the third quarter.
+            final boolean on = progress < Animation.FULL
+                               && 4 * progress / Animation.FULL % 2 == 0;
+            if (on != flashOn) {
+                flashOn = on;
+                for (int i = 0; i < flashing.length; i++) {
+                    markCell(flashing[i] % size, flashing[i] / size);
+                }
+            }
+        }
+    };
     private TiledLayer board;
     private Image boardImage;
+    // The tiles of boardImage scaled to tileSize, if they are of another size.
+    private Image tileImage;
+    private int boardSize;
+    private int size = 9;
+    // True if every tile may be out of date.
     private volatile boolean refreshBoard = true;
+    // Cells, row * size + col, whose tiles may be out of date.
+    private boolean[] stale = new boolean[0];
+    private int[] staleCells = new int[0];
+    private int staleCount = 0;
+    // Cells that flicker while the flash runs.
+    private int[] flashing = new int[0];
     private Listener listener;
     private int tileSize;
     private int selectedCol = 4, selectedRow = 4;
-    private int moves = 0;
+    private boolean notesMode = false;
+    private Font notesFont;
     private long startTime;
     private long victoryTimeSeconds = -1;
+    private final HintEngine hints = new HintEngine();
+    // Description of the hint shown, or null if there is none.
+    private String hintText;
+    // True if the banner shows the result of a check instead of a hint.
+    private boolean checkShown = false;
+    // One tile of VARIANT_SHADE for drawRGB().
+    private int[] shade;
 
     public SudokuView(Listener listener) {
         super();
         this.listener = listener;
+        model.setListener(this);
+    }
+
+    public SudokuModel getModel() {
+        return model;
+    }
+
+    /**
+     * @see com.nokia.example.sudokumaster.SudokuModel.Listener#onCellChanged(int, int)
+     */
+    public void onCellChanged(int col, int row) {
+        clearHint();
+        markCell(col, row);
+    }
+
+    /**
+     * @see com.nokia.example.sudokumaster.SudokuModel.Listener#onBoardChanged()
+     */
+    public void onBoardChanged() {
+        clearHint();
+        if (model.getSize() != size) {
+            size = model.getSize();
+            updateTileSize();
+        }
+        markBoard();
     }
 
     public void setBoardImage(Image image) {
         board = null;
         boardImage = image;
+        tileImage = null;
         refreshBoard = true;
     }
 
+    /**
+     * @param boardSize width and height of the board in pixels. The tiles
+     *        of the board image should fit nine of them in it.
+     */
     public void setBoardSize(int boardSize) {
         setSize(boardSize, boardSize);
-        tileSize = boardSize / 9;
+        this.boardSize = boardSize;
+        updateTileSize();
+    }
+
+    private void updateTileSize() {
+        tileSize = (boardSize - 1) / size;
+        board = null;
+        tileImage = null;
+        refreshBoard = true;
     }
 
     /**
@@ -68,22 +166,14 @@ public class SudokuView
      * @see com.nokia.example.sudokumaster.View#update()
      */
     public void update() {
-        for (int col = 0; col < 9; col++) {
-            for (int row = 0; row < 9; row++) {
-                if (animate[col][row] > 0) {
-                    boolean old = drawError(col, row);
-                    animate[col][row]--;
-                    if (old != drawError(col, row)) {
-                        refreshBoard = true;
-                        invalidate();
-                    }
-                }
-            }
+        if (hints.getState() == HintEngine.SEARCHING
+                && hints.resume(HINT_BUDGET) != HintEngine.SEARCHING) {
+            showHint();
         }
     }
 
-    private boolean drawError(int col, int row) {
-        return 4 * animate[col][row] / ANIMATION_DURATION % 2 == 1;
+    public boolean isAnimating() {
+        return hints.getState() == HintEngine.SEARCHING;
     }
 
     /**
@@ -93,7 +183,9 @@ public class SudokuView
      */
     protected void paint(Graphics g) {
         drawBoard(g);
+        drawVariant(g);
         drawNumbers(g);
+        drawHint(g);
     }
 
     /**
@@ -108,51 +200,172 @@ public class SudokuView
             return;
         }
         if (board == null) {
-            board = new TiledLayer(9, 9, boardImage, boardImage.getWidth() / 5,
-                                   boardImage.getHeight());
+            if (tileImage == null) {
+                tileImage = boardImage.getHeight() == tileSize ? boardImage
+                        : ImageLoader.scaleImage(boardImage, tileSize * 5, tileSize);
+            }
+            board = new TiledLayer(size, size, tileImage, tileSize, tileSize);
             board.setPosition(left, top);
         }
-        if (refreshBoard) {
-            refreshBoard();
-        }
+        refreshBoard();
         board.paint(g);
     }
 
-    private void refreshBoard() {
-        refreshBoard = false;
-        board.fillCells(0, 0, 9, 9, BG0);
-        board.fillCells(0, 3, 3, 3, BG1);
-        board.fillCells(3, 0, 3, 3, BG1);
-        board.fillCells(3, 6, 3, 3, BG1);
-        board.fillCells(6, 3, 3, 3, BG1);
-        // If the user selected a cell, hightlight  the other cells
-        // in the row and column the selected cell is in.
-        if (selectedCol >= 0 && selectedRow >= 0) {
-            for (int col = 0; col < 9; col++) {
-                if (col != selectedCol) {
-                    final int bg = board.getCell(col, selectedRow) == 
-                            BG0 ? BG0_HIGHLIGHTED : BG1_HIGHLIGHTED;
-                    board.setCell(col, selectedRow, bg);
-                }
+    /**
+     * Brings the tiles of the stale cells up to date, or those of every
+     * cell if the whole board is out of date. Only the tiles that differ
+     * are set.
+     */
+    private synchronized void refreshBoard() {
+        final boolean error = flashOn;
+        final boolean pattern = !checkShown && hintText != null
+                                && hints.getState() == HintEngine.FOUND;
+        if (refreshBoard || stale.length != size * size) {
+            refreshBoard = false;
+            if (stale.length != size * size) {
+                stale = new boolean[size * size];
+                staleCells = new int[size * size];
+            }
+            for (int i = 0; i < staleCount; i++) {
+                stale[staleCells[i]] = false;
             }
-            for (int row = 0; row < 9; row++) {
-                if (row != selectedRow) {
-                    final int bg = board.getCell(selectedCol, row) == 
-                            BG0 ? BG0_HIGHLIGHTED : BG1_HIGHLIGHTED;
-                    board.setCell(selectedCol, row, bg);
+            staleCount = 0;
+            for (int col = 0; col < size; col++) {
+                for (int row = 0; row < size; row++) {
+                    refreshTile(col, row, error, pattern);
                 }
             }
+            return;
+        }
+        for (int i = 0; i < staleCount; i++) {
+            final int cell = staleCells[i];
+            stale[cell] = false;
+            refreshTile(cell % size, cell / size, error, pattern);
+        }
+        staleCount = 0;
+    }
+
+    private void refreshTile(int col, int row, boolean error, boolean pattern) {
+        final int tile = getTile(col, row, error, pattern);
+        if (board.getCell(col, row) != tile) {
+            board.setCell(col, row, tile);
         }
+    }
+
+    /**
+     * @param error true if the conflicting cells are flickered on
+     * @param pattern true if the cells of the hint are highlighted
+     * @return the tile of a cell
+     */
+    private int getTile(int col, int row, boolean error, boolean pattern) {
         // If the user selects a number that is next to or on the same
         // row or column the same number, the conflicting numbers will
         // be flickered.
-        for (int col = 0; col < 9; col++) {
-            for (int row = 0; row < 9; row++) {
-                if (animate[col][row] > 0 && drawError(col, row)) {
-                    board.setCell(col, row, BG_ERROR);
+        if (error && model.isConflict(col, row) || checkShown && model.isMistake(col, row)) {
+            return BG_ERROR;
+        }
+        // The blocks are shaded like a chessboard.
+        final int order = model.getGeometry().order;
+        final boolean odd = (col / order + row / order) % 2 == 1;
+        // If the user selected a cell, hightlight the other cells
+        // in the row and column the selected cell is in.
+        final boolean highlighted = (col == selectedCol) != (row == selectedRow)
+                || pattern && hints.isPattern(col, row);
+        if (highlighted) {
+            return odd ? BG1_HIGHLIGHTED : BG0_HIGHLIGHTED;
+        }
+        return odd ? BG1 : BG0;
+    }
+
+    /**
+     * Marks the tile of a cell to be refreshed and repainted.
+     */
+    private synchronized void markCell(int col, int row) {
+        if (col < 0 || row < 0 || col >= size || row >= size) {
+            return;
+        }
+        final int cell = row * size + col;
+        if (stale.length != size * size) {
+            refreshBoard = true;
+        }
+        else if (!refreshBoard && !stale[cell]) {
+            stale[cell] = true;
+            staleCells[staleCount++] = cell;
+        }
+        invalidate(left + col * tileSize, top + row * tileSize, tileSize, tileSize);
+    }
+
+    /**
+     * Marks the cells on the row and the column of a cell.
+     */
+    private void markLines(int col, int row) {
+        for (int i = 0; i < size; i++) {
+            markCell(i, row);
+            markCell(col, i);
+        }
+    }
+
+    /**
+     * Marks every tile to be refreshed and the whole view to be repainted.
+     */
+    private void markBoard() {
+        refreshBoard = true;
+        invalidate();
+    }
+
+    /**
+     * Draws the rules of the variant, if the game has one.
+     * @param g Graphics object
+     */
+    private void drawVariant(Graphics g) {
+        final Variant variant = model.getVariant();
+        if (variant == null || tileSize <= 0) {
+            return;
+        }
+        if (shade == null || shade.length != tileSize * tileSize) {
+            shade = new int[tileSize * tileSize];
+            for (int i = 0; i < shade.length; i++) {
+                shade[i] = VARIANT_SHADE;
+            }
+        }
+        final GlyphAtlas labels = GlyphAtlas.get(getNotesFont(), CAGE_COLOR);
+        final int inset = Math.max(2, tileSize / 10);
+        final int last = tileSize - 1;
+        g.setColor(CAGE_COLOR);
+        g.setStrokeStyle(Graphics.DOTTED);
+        for (int cell = 0; cell < size * size; cell++) {
+            final int x = left + cell % size * tileSize;
+            final int y = top + cell / size * tileSize;
+            if (variant.isShaded(cell)) {
+                g.drawRGB(shade, 0, tileSize, x, y, tileSize, tileSize, true);
+            }
+            final int borders = variant.getBorders(cell);
+            if (borders != 0) {
+                // The lines run to the edge of the cell where the cage goes on.
+                final int x0 = x + ((borders & Variant.LEFT) != 0 ? inset : 0);
+                final int x1 = x + last - ((borders & Variant.RIGHT) != 0 ? inset : 0);
+                final int y0 = y + ((borders & Variant.TOP) != 0 ? inset : 0);
+                final int y1 = y + last - ((borders & Variant.BOTTOM) != 0 ? inset : 0);
+                if ((borders & Variant.TOP) != 0) {
+                    g.drawLine(x0, y0, x1, y0);
+                }
+                if ((borders & Variant.RIGHT) != 0) {
+                    g.drawLine(x1, y0, x1, y1);
                 }
+                if ((borders & Variant.BOTTOM) != 0) {
+                    g.drawLine(x0, y1, x1, y1);
+                }
+                if ((borders & Variant.LEFT) != 0) {
+                    g.drawLine(x0, y0, x0, y1);
+                }
+            }
+            final int label = variant.getLabel(cell);
+            if (label > 0) {
+                labels.drawNumber(g, label, x + inset + 1, y + inset,
+                                  Graphics.LEFT | Graphics.TOP);
             }
         }
+        g.setStrokeStyle(Graphics.SOLID);
     }
 
     /**
@@ -160,37 +373,167 @@ public class SudokuView
      * @param g Graphics object
      */
     private void drawNumbers(Graphics g) {
-        // Draw the puzzle numbers. The 'puzzle' array
-        // holds the places and the numbers to be drawn.
-        g.setColor(PUZZLE_NUMBER_COLOR);
+        Font font = g.getFont();
+        if (font.getHeight() > tileSize) {
+            font = getNotesFont();
+        }
+        // The puzzle numbers and the numbers, which are the result of user
+        // input, are drawn in different colors.
+        final GlyphAtlas puzzleNumbers = GlyphAtlas.get(font, PUZZLE_NUMBER_COLOR);
+        final GlyphAtlas numbers = GlyphAtlas.get(font, NUMBER_COLOR);
         final int xOffset = left + (tileSize + 1) / 2;
-        final int yOffset = top + (tileSize + 1) / 2 - g.getFont().getHeight() / 2;
+        final int yOffset = top + (tileSize + 1) / 2 - font.getHeight() / 2;
+        GlyphAtlas atlas;
         int x, y, n;
-        for (int col = 0; col < 9; col++) {
+        for (int col = 0; col < size; col++) {
             x = xOffset + col * tileSize;
-            for (int row = 0; row < 9; row++) {
+            for (int row = 0; row < size; row++) {
                 y = yOffset + row * tileSize;
-                n = puzzle[col][row];
+                n = model.getValue(col, row);
                 if (n > 0) {
-                    g.drawString(String.valueOf(n), x, y,
-                                 Graphics.HCENTER | Graphics.TOP);
+                    atlas = model.isGiven(col, row) ? puzzleNumbers : numbers;
+                    atlas.drawChar(g, BoardGeometry.symbol(n), x, y,
+                                   Graphics.HCENTER | Graphics.TOP);
                 }
             }
         }
-        // Draw the numbers, which are the result of user input.
-        // 'numbers' array holds the numbers and places where to draw.
-        g.setColor(NUMBER_COLOR);
-        for (int col = 0; col < 9; col++) {
-            x = xOffset + col * tileSize;
-            for (int row = 0; row < 9; row++) {
-                y = yOffset + row * tileSize;
-                n = numbers[col][row];
-                if (n > 0) {
-                    g.drawString(String.valueOf(n), x, y,
-                                 Graphics.HCENTER | Graphics.TOP);
+        drawNotes(g);
+    }
+
+    /**
+     * Draws the pencil marks of the empty cells, each digit in its own
+     * place of a grid inside the cell, 3x3 on a 9x9 board. If the digits
+     * do not fit, the marks are drawn as dots.
+     * @param g Graphics object
+     */
+    private void drawNotes(Graphics g) {
+        final Font marksFont = getNotesFont();
+        final GlyphAtlas marks = GlyphAtlas.get(marksFont, NOTE_COLOR);
+        final int order = model.getGeometry().order;
+        final int step = tileSize / order;
+        final boolean digits = marksFont.getHeight() <= step + 2;
+        final int dot = Math.max(2, tileSize / 10);
+        g.setColor(NOTE_COLOR);
+        int notes, x, y;
+        for (int col = 0; col < size; col++) {
+            for (int row = 0; row < size; row++) {
+                notes = model.getNotes(col, row);
+                if (notes == 0 || model.getValue(col, row) > 0) {
+                    continue;
+                }
+                for (int n = 1; n <= size; n++) {
+                    if ((notes & 1 << n) == 0) {
+                        continue;
+                    }
+                    x = left + col * tileSize + (n - 1) % order * step + step / 2 + 1;
+                    y = top + row * tileSize + (n - 1) / order * step + step / 2 + 1;
+                    if (digits) {
+                        marks.drawChar(g, BoardGeometry.symbol(n), x,
+                                       y - marksFont.getHeight() / 2,
+                                       Graphics.HCENTER | Graphics.TOP);
+                    }
+                    else {
+                        g.fillRect(x - dot / 2, y - dot / 2, dot, dot);
+                    }
+                }
+            }
+        }
+    }
+
+    private Font getNotesFont() {
+        if (notesFont == null) {
+            notesFont = Font.getFont(Font.FACE_SYSTEM, Font.STYLE_PLAIN, Font.SIZE_SMALL);
+        }
+        return notesFont;
+    }
+
+    /**
+     * Frames the cells the hint changes and draws its description on a
+     * banner at the top of the board, or at the bottom if the framed
+     * cells are in the upper half.
+     * @param g Graphics object
+     */
+    private void drawHint(Graphics g) {
+        final String text = hintText;
+        if (text == null) {
+            return;
+        }
+        final boolean found = !checkShown && hints.getState() == HintEngine.FOUND;
+        boolean upper = false;
+        g.setColor(HINT_COLOR);
+        for (int col = 0; found && col < size; col++) {
+            for (int row = 0; row < size; row++) {
+                if (hints.isTarget(col, row)) {
+                    g.drawRect(left + col * tileSize, top + row * tileSize,
+                               tileSize - 1, tileSize - 1);
+                    g.drawRect(left + col * tileSize + 1, top + row * tileSize + 1,
+                               tileSize - 3, tileSize - 3);
+                    upper |= row < (size + 1) / 2;
                 }
             }
         }
+        final int h = g.getFont().getHeight() + 4;
+        final int y = upper ? top + height - h : top;
+        g.fillRect(left, y, width, h);
+        g.setColor(HINT_TEXT_COLOR);
+        g.drawString(text, left + width / 2, y + 2, Graphics.HCENTER | Graphics.TOP);
+    }
+
+    /**
+     * Starts looking for a hint. It is shown once found, which may take a
+     * few updates.
+     */
+    public void hint() {
+        clearHint();
+        hints.start(model);
+        if (hints.getState() != HintEngine.SEARCHING) {
+            // The last hint still applies, or there can be none.
+            showHint();
+        }
+        else {
+            // The search runs in update(), so wake the render loop.
+            onInvalidated();
+        }
+    }
+
+    private void showHint() {
+        if (hints.getState() == HintEngine.FOUND) {
+            final int cell = hints.getPlacedCell();
+            if (cell >= 0) {
+                selectCell(cell % size, cell / size);
+            }
+            hintText = hints.getText();
+        }
+        else {
+            hintText = "No hint found";
+        }
+        markBoard();
+    }
+
+    /**
+     * Checks the progress: the numbers that differ from the solution are
+     * marked, and the banner tells how many there are.
+     */
+    public void check() {
+        clearHint();
+        final int mistakes = model.getMistakes();
+        if (mistakes == 0) {
+            hintText = "No mistakes";
+        }
+        else {
+            hintText = mistakes == 1 ? "1 wrong number" : mistakes + " wrong numbers";
+        }
+        checkShown = true;
+        markBoard();
+    }
+
+    private void clearHint() {
+        hints.cancel();
+        if (hintText != null) {
+            hintText = null;
+            checkShown = false;
+            markBoard();
+        }
     }
 
     public void handlePointerEvent(int type, int x, int y) {
@@ -198,19 +541,27 @@ public class SudokuView
             return;
         }
         if (tileSize > 0) {
-            selectCell(Math.min((x - left) / tileSize, 8), Math.min(
-                    (y - top) / tileSize, 8));
+            selectCell(Math.min((x - left) / tileSize, size - 1), Math.min(
+                    (y - top) / tileSize, size - 1));
         }
-        if (type == View.POINTER_RELEASED && puzzle[selectedCol][selectedRow] <= 0) {
+        if (type == View.POINTER_RELEASED && !model.isGiven(selectedCol, selectedRow)) {
             listener.onCellSelected();
         }
     }
 
     private void selectCell(int col, int row) {
+        if (col == selectedCol && row == selectedRow) {
+            return;
+        }
+        clearHint();
+        final int oldCol = selectedCol;
+        final int oldRow = selectedRow;
         selectedCol = col;
         selectedRow = row;
-        refreshBoard = true;
-        invalidate();
+        // Only the cells on the rows and columns of the old and the new
+        // selection change.
+        markLines(oldCol, oldRow);
+        markLines(col, row);
     }
 
     public void keyEvent(final int type, final int key) {
@@ -219,19 +570,19 @@ public class SudokuView
         }
         switch (key) {
             case KEY_UP:
-                selectCell(selectedCol, (selectedRow - 1 + 9) % 9);
+                selectCell(selectedCol, (selectedRow - 1 + size) % size);
                 break;
             case KEY_DOWN:
-                selectCell(selectedCol, (selectedRow + 1 + 9) % 9);
+                selectCell(selectedCol, (selectedRow + 1) % size);
                 break;
             case KEY_LEFT:
-                selectCell((selectedCol - 1 + 9) % 9, selectedRow);
+                selectCell((selectedCol - 1 + size) % size, selectedRow);
                 break;
             case KEY_RIGHT:
-                selectCell((selectedCol + 1 + 9) % 9, selectedRow);
+                selectCell((selectedCol + 1) % size, selectedRow);
                 break;
             case KEY_SELECT:
-                if (type == KEY_PRESSED && puzzle[selectedCol][selectedRow] <= 0) {
+                if (type == KEY_PRESSED && !model.isGiven(selectedCol, selectedRow)) {
                     listener.onCellSelected();
                 }
                 break;
@@ -240,107 +591,107 @@ public class SudokuView
         }
     }
 
+    public boolean isNotesMode() {
+        return notesMode;
+    }
+
+    /**
+     * In notes mode, entering a number toggles a pencil mark instead of
+     * setting the number, and 0 clears the marks of the cell.
+     */
+    public void setNotesMode(boolean notesMode) {
+        this.notesMode = notesMode;
+    }
+
     /**
      * Checks that the user input number is valid according to game logic,
      * if so, update the number of moves, check if the whole board is filled
-     * and notify listeners that a new number has been set.
+     * and notify listeners that a new number has been set. Conflicting
+     * numbers are flickered.
      * @param n the new number
      */
     public void setNumber(final int n) {
-        if (cellSelected() && puzzle[selectedCol][selectedRow] < 1) {
-            final int newNumber = n > 9 || n < 1 ? 0 : n;
-            if (validateNumber(n) && numbers[selectedCol][selectedRow] != newNumber) {
-                numbers[selectedCol][selectedRow] = newNumber;
-                moves++;
+        if (cellSelected() && notesMode) {
+            if (n > 0) {
+                model.toggleNote(selectedCol, selectedRow, n);
+            }
+            else {
+                model.clearNotes(selectedCol, selectedRow);
+            }
+        }
+        else if (cellSelected()) {
+            if (model.setNumber(selectedCol, selectedRow, n)) {
                 if (isComplete()) {
                     victoryTimeSeconds = getElapsedSeconds();
                 }
-                invalidate();
+            }
+            else if (model.hasConflicts()) {
+                flashing = getConflicts();
+                Animator.getInstance().start(flash);
             }
         }
         listener.onSetNumber();
     }
 
-    private boolean cellSelected() {
-        return selectedCol >= 0 && selectedCol < 9 && selectedRow >= 0 && selectedCol < 9;
-    }
-
-    private int getNumber(final int col, final int row) {
-        if (puzzle[col][row] > 0) {
-            return puzzle[col][row];
+    /**
+     * @return the conflicting cells, row * size + col
+     */
+    private int[] getConflicts() {
+        int count = 0;
+        final int[] cells = new int[size * size];
+        for (int col = 0; col < size; col++) {
+            for (int row = 0; row < size; row++) {
+                if (model.isConflict(col, row)) {
+                    cells[count++] = row * size + col;
+                }
+            }
         }
-        return numbers[col][row];
+        final int[] conflicts = new int[count];
+        System.arraycopy(cells, 0, conflicts, 0, count);
+        return conflicts;
     }
 
     /**
-     * Validate the number by checking that the same number is not next to the
-     * selected cell, or in the same row or column.
-     * @param n the number to be validated.
-     * @return true or false depending on the validation result
+     * Reverts the latest move and selects the cell it changed.
      */
-    private boolean validateNumber(final int n) {
-        return n == 0 || (validateRow(n) & validateCol(n) & validateBlock(n));
+    public void undo() {
+        afterUndoOrRedo(model.undo());
     }
 
-    private boolean validateRow(final int n) {
-        for (int col = 0; col < 9; col++) {
-            if (getNumber(col, selectedRow) == n && col != selectedCol) {
-                animateCell(col, selectedRow);
-                return false;
-            }
-        }
-        return true;
+    /**
+     * Applies the latest undone move again and selects the cell it changed.
+     */
+    public void redo() {
+        afterUndoOrRedo(model.redo());
     }
 
-    private boolean validateCol(final int n) {
-        for (int row = 0; row < 9; row++) {
-            if (getNumber(selectedCol, row) == n && row != selectedRow) {
-                animateCell(selectedCol, row);
-                return false;
+    private void afterUndoOrRedo(int cell) {
+        if (cell >= 0) {
+            selectCell(cell % size, cell / size);
+            if (isComplete()) {
+                victoryTimeSeconds = getElapsedSeconds();
             }
-        }
-        return true;
-    }
-
-    private boolean validateBlock(final int n) {
-        final int colOffset = selectedCol / 3 * 3;
-        final int rowOffset = selectedRow / 3 * 3;
-        int col, row;
-        for (int c = 0; c < 3; c++) {
-            col = colOffset + c;
-            for (int r = 0; r < 3; r++) {
-                row = rowOffset + r;
-                if (getNumber(col, row) == n && !(col == selectedCol && row == selectedRow)) {
-                    animateCell(col, row);
-                    return false;
-                }
+            else if (victoryTimeSeconds > -1) {
+                // The board is no longer complete, so the clock runs again.
+                final long seconds = victoryTimeSeconds;
+                victoryTimeSeconds = -1;
+                setElapsedSeconds(seconds);
             }
         }
-        return true;
+        listener.onSetNumber();
     }
 
-    private void animateCell(int col, int row) {
-        animate[col][row] = ANIMATION_DURATION;
-        refreshBoard = true;
-        invalidate();
+    private boolean cellSelected() {
+        return selectedCol >= 0 && selectedCol < size && selectedRow >= 0 && selectedRow < size;
     }
 
     /**
-     * Checks if the board is completed by checking that
-     * there are no empty cells.
-     * @return true or false depending on if an empty cell was found
+     * Checks if the board is completed by comparing every cell with the
+     * solution.
+     * @return true if every cell holds the number of the solution
      */
     public boolean isComplete() {
-        int n;
-        for (int i = 0; i < 9; i++) {
-            for (int j = 0; j < 9; j++) {
-                n = getNumber(i, j);
-                if (n <= 0) {
-                    return false;
-                }
-            }
-        }
-        return true;
+        return model.isSolved();
     }
 
     public static interface Listener {
@@ -349,34 +700,33 @@ public class SudokuView
     }
 
     public void restart() {
-        numbers = new int[9][9];
-        moves = 0;
+        model.restart();
         startTime = System.currentTimeMillis();
         victoryTimeSeconds = -1;
-        selectCell(4, 4);
+        selectCell(size / 2, size / 2);
     }
 
     public void newGame(int[][] puzzle) {
-        this.puzzle = puzzle;
+        newGame(puzzle, null, null);
+    }
+
+    /**
+     * @param puzzle the puzzle as puzzle[col][row]
+     * @param variant the variant, or null for classic sudoku
+     * @param solution the solution as solution[col][row], or null if it is
+     *        not known
+     */
+    public void newGame(int[][] puzzle, Variant variant, int[][] solution) {
+        model.newGame(puzzle, variant, solution);
         restart();
     }
 
     public int getMoves() {
-        return moves;
+        return model.getMoves();
     }
 
     public int getEmpty() {
-        int empty = 0;
-        int n;
-        for (int i = 0; i < 9; i++) {
-            for (int j = 0; j < 9; j++) {
-                n = getNumber(i, j);
-                if (n <= 0) {
-                    empty++;
-                }
-            }
-        }
-        return empty;
+        return model.getEmpty();
     }
 
     public long getElapsedSeconds() {
@@ -386,6 +736,17 @@ public class SudokuView
         return (System.currentTimeMillis() - startTime) / 1000;
     }
 
+    /**
+     * @return the time in milliseconds until the elapsed time reaches the
+     *         next second, or 0 if the clock has stopped
+     */
+    public long getTimeToNextSecond() {
+        if (victoryTimeSeconds > -1) {
+            return 0;
+        }
+        return 1000 - (System.currentTimeMillis() - startTime) % 1000;
+    }
+
     private void setElapsedSeconds(long elapsedSeconds) {
         if (isComplete()) {
             victoryTimeSeconds = elapsedSeconds;
@@ -402,16 +763,13 @@ public class SudokuView
         try {
             bout = new ByteArrayOutputStream();
             DataOutputStream dout = new DataOutputStream(bout);
-            for (int i = 0; i < 9; i++) {
-                for (int j = 0; j < 9; j++) {
-                    dout.writeByte(puzzle[i][j]);
-                    dout.writeByte(numbers[i][j]);
-                }
-            }
+            model.write(dout);
             dout.writeByte(selectedCol);
             dout.writeByte(selectedRow);
-            dout.writeInt(moves);
+            dout.writeInt(model.getMoves());
             dout.writeLong(getElapsedSeconds());
+            model.getJournal().write(dout);
+            model.writeNotes(dout);
             return bout.toByteArray();
         }
         catch (IOException e) {
@@ -436,19 +794,19 @@ public class SudokuView
     public void setState(byte[] state) {
         try {
             DataInputStream din = new DataInputStream(new ByteArrayInputStream(state));
-            for (int i = 0; i < 9; i++) {
-                for (int j = 0; j < 9; j++) {
-                    puzzle[i][j] = din.readByte();
-                    numbers[i][j] = din.readByte();
-                }
-            }
+            model.read(din);
             selectedCol = din.readByte();
             selectedRow = din.readByte();
-            moves = din.readInt();
+            model.setMoves(din.readInt());
             setElapsedSeconds(din.readLong());
+            // States saved by older versions end early, without the move
+            // history or the pencil marks.
+            model.getJournal().read(din);
+            model.readNotes(din);
         }
         catch (IOException e) {
             // Empty implementation.
         }
+        markBoard();
     }
 }
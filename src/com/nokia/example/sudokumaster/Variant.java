@@ -0,0 +1,175 @@
+/**
+* Copyright (c) 2012-2014 Microsoft Mobile. All rights reserved.
+* Nokia and Nokia Connecting People are registered trademarks of Nokia Corporation. 
+* Oracle and Java are trademarks or registered trademarks of Oracle and/or its
+* affiliates. Other product and company names mentioned herein may be trademarks
+* or trade names of their respective owners. 
+* See LICENSE.TXT for license information.
+*/
+
+package com.nokia.example.sudokumaster;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * Extra rules of a sudoku variant on top of the rows, columns and boxes.
+ * A variant adds units, groups of cells that must hold different digits,
+ * and may narrow the digits a unit allows further, like the cage sums of
+ * Killer sudoku. The units are listed once, together with the units of
+ * every cell, so the model and the solver only visit the units of the
+ * changed cell on each move.
+ *
+ * The variant also tells how it is drawn: which cells are shaded, which
+ * sides of a cell are outlined and which cells carry a label. It does not
+ * draw anything itself, so the desktop tools can use it without the UI
+ * classes. A classic game has no variant at all.
+ */
+public abstract class Variant {
+
+    public static final int CLASSIC = 0;
+    public static final int DIAGONAL = 1;
+    public static final int WINDOKU = 2;
+    public static final int KILLER = 3;
+    public static final int TOP = 1;
+    public static final int RIGHT = 2;
+    public static final int BOTTOM = 4;
+    public static final int LEFT = 8;
+    private static final short[] NO_UNITS = new short[0];
+    protected final BoardGeometry geometry;
+    /** Cells of the units the variant adds. */
+    short[][] units;
+    /** The variant units of every cell, as indexes into units. */
+    short[][] cellUnits;
+
+    protected Variant(BoardGeometry geometry) {
+        this.geometry = geometry;
+    }
+
+    /**
+     * Tells whether puzzles of the variant can be made for the board.
+     * Windoku grids larger than 9x9 could not be filled in reasonable time,
+     * so Windoku is limited to 4x4 and 9x9 boards.
+     * @param type one of the variant constants
+     * @param order boxes per side of the board, see BoardGeometry
+     * @return true if the variant can be played on the board
+     */
+    public static boolean isSupported(int type, int order) {
+        return type >= CLASSIC && type <= KILLER && (type != WINDOKU || order <= 3);
+    }
+
+    /**
+     * Creates a variant with fixed units. Killer sudoku takes its cages
+     * from the solution, so it is created by the generator instead.
+     * @param type DIAGONAL or WINDOKU
+     * @param geometry the board
+     * @return the variant
+     */
+    public static Variant create(int type, BoardGeometry geometry) {
+        switch (type) {
+            case DIAGONAL:
+                return new DiagonalVariant(geometry);
+            case WINDOKU:
+                return new WindokuVariant(geometry);
+            default:
+                throw new IllegalArgumentException("Bad variant " + type);
+        }
+    }
+
+    /**
+     * Sets the units of the variant and lists the units of every cell.
+     */
+    protected void setUnits(short[][] units) {
+        this.units = units;
+        final int[] counts = new int[geometry.cells];
+        for (int u = 0; u < units.length; u++) {
+            for (int i = 0; i < units[u].length; i++) {
+                counts[units[u][i]]++;
+            }
+        }
+        cellUnits = new short[geometry.cells][];
+        for (int cell = 0; cell < geometry.cells; cell++) {
+            cellUnits[cell] = counts[cell] == 0 ? NO_UNITS : new short[counts[cell]];
+            counts[cell] = 0;
+        }
+        for (int u = 0; u < units.length; u++) {
+            for (int i = 0; i < units[u].length; i++) {
+                final int cell = units[u][i];
+                cellUnits[cell][counts[cell]++] = (short) u;
+            }
+        }
+    }
+
+    public BoardGeometry getGeometry() {
+        return geometry;
+    }
+
+    public abstract int getType();
+
+    public int getUnitCount() {
+        return units.length;
+    }
+
+    /**
+     * Gives the digits the empty cells of a unit may still take. By default
+     * these are the digits not used in the unit yet.
+     * @param unit index of the unit
+     * @param used the digits placed in the unit, as bits 1 to the board size
+     * @return the allowed digits, as bits 1 to the board size
+     */
+    public int allowed(int unit, int used) {
+        return ~used & geometry.all;
+    }
+
+    /**
+     * @return true if the cell is shaded on the board
+     */
+    public boolean isShaded(int cell) {
+        return false;
+    }
+
+    /**
+     * @return the sides of the cell outlined on the board, a combination of
+     *         TOP, RIGHT, BOTTOM and LEFT
+     */
+    public int getBorders(int cell) {
+        return 0;
+    }
+
+    /**
+     * @return the number shown in the corner of the cell, 0 for none
+     */
+    public int getLabel(int cell) {
+        return 0;
+    }
+
+    /**
+     * Writes the type of the variant and the data it needs besides the board.
+     * @param dout destination stream
+     */
+    public void write(DataOutputStream dout) throws IOException {
+        dout.writeByte(getType());
+    }
+
+    /**
+     * Reads a variant written by write().
+     * @param din source stream
+     * @param geometry the board
+     * @return the variant, or null for a classic game
+     */
+    public static Variant read(DataInputStream din, BoardGeometry geometry) throws IOException {
+        final int type = din.readByte();
+        switch (type) {
+            case CLASSIC:
+                return null;
+            case DIAGONAL:
+            case WINDOKU:
+                return create(type, geometry);
+            case KILLER:
+                return KillerVariant.readCages(din, geometry);
+            default:
+                throw new IOException("Bad variant " + type);
+        }
+    }
+}
@@ -50,11 +50,11 @@ public class VictoryDialog
         x = left + width / 3;
         g.setColor(TEXT_COLOR);
         y += height / 4;
+        final GlyphAtlas atlas = GlyphAtlas.get(g.getFont(), TEXT_COLOR);
         g.drawString(MOVES_TEXT, x, y, Graphics.LEFT | Graphics.TOP);
-        g.drawString(String.valueOf(moves), x, y, Graphics.RIGHT | Graphics.TOP);
+        atlas.drawNumber(g, moves, x, y, Graphics.RIGHT | Graphics.TOP);
         y += height / 4;
         g.drawString(ELAPSED_TEXT, x, y, Graphics.LEFT | Graphics.TOP);
-        g.drawString(String.valueOf(seconds), x, y,
-                     Graphics.RIGHT | Graphics.TOP);
+        atlas.drawNumber(g, seconds, x, y, Graphics.RIGHT | Graphics.TOP);
     }
 }
@@ -14,6 +14,13 @@ import javax.microedition.lcdui.Graphics;
 /**
  * Generic View-class, which is subclassed by all
  * game widgets.
+ *
+ * A view keeps track of the part of the screen that needs repainting: the
+ * area passed to invalidate(int, int, int, int), or all of it and the area
+ * it covered when it was last rendered after invalidate(). Views paint
+ * within their own bounds, so that Layout can repaint only the views that
+ * meet the changed area. Invalidating a view also tells the view that
+ * holds it, so that the render loop can be woken.
  */
 public abstract class View {
 
@@ -32,6 +39,14 @@ public abstract class View {
     public int left, right, top, bottom, width, height;
     private volatile boolean needsRendering = true;
     private volatile boolean visible = true;
+    // True if the whole view needs repainting.
+    private boolean invalidated = true;
+    // Changed part of the view, empty while dirtyRight <= dirtyLeft.
+    private int dirtyLeft, dirtyTop, dirtyRight, dirtyBottom;
+    // Area covered when the view was last rendered, empty if it was hidden.
+    private int paintedLeft, paintedTop, paintedRight, paintedBottom;
+    // The view that holds this one, or null.
+    private View parent;
 
     protected View() {
         // View with no parameters.
@@ -92,7 +107,7 @@ public abstract class View {
         final boolean oldVisible = this.visible;
         this.visible = visible;
         if (this.visible != oldVisible) {
-            needsRendering = true;
+            invalidate();
         }
     }
 
@@ -104,19 +119,143 @@ public abstract class View {
         // Empty implementation.
     }
 
-    public void render(Graphics g) {
-        needsRendering = false;
-        if (visible) {
+    /**
+     * @return true if update() should be called again soon, because the
+     *         view has work in progress; animations are run by the
+     *         Animator instead
+     */
+    public boolean isAnimating() {
+        return false;
+    }
+
+    /**
+     * Paints the view if it is visible and meets the clip area of the
+     * graphics.
+     * @param g Graphics object
+     * @return true if the view was painted
+     */
+    public boolean render(Graphics g) {
+        if (visible && intersects(g.getClipX(), g.getClipY(),
+                                  g.getClipX() + g.getClipWidth(),
+                                  g.getClipY() + g.getClipHeight())) {
             paint(g);
+            return true;
         }
+        return false;
     }
 
     public boolean needsRendering() {
         return needsRendering;
     }
 
+    /**
+     * Marks the whole view for repainting, as well as the area it covered
+     * when it was last rendered, in case it has moved or was hidden since.
+     */
     public void invalidate() {
-        needsRendering = true;
+        synchronized (this) {
+            invalidated = true;
+            needsRendering = true;
+        }
+        onInvalidated();
+    }
+
+    /**
+     * Marks a part of the view for repainting.
+     * @param x left edge of the area in pixels
+     * @param y top edge of the area in pixels
+     * @param w width of the area in pixels
+     * @param h height of the area in pixels
+     */
+    public void invalidate(int x, int y, int w, int h) {
+        if (w <= 0 || h <= 0) {
+            return;
+        }
+        synchronized (this) {
+            if (dirtyRight <= dirtyLeft) {
+                dirtyLeft = x;
+                dirtyTop = y;
+                dirtyRight = x + w;
+                dirtyBottom = y + h;
+            }
+            else {
+                dirtyLeft = Math.min(dirtyLeft, x);
+                dirtyTop = Math.min(dirtyTop, y);
+                dirtyRight = Math.max(dirtyRight, x + w);
+                dirtyBottom = Math.max(dirtyBottom, y + h);
+            }
+            needsRendering = true;
+        }
+        onInvalidated();
+    }
+
+    void setParent(View parent) {
+        this.parent = parent;
+    }
+
+    /**
+     * Called when the view, or a view it holds, has been invalidated.
+     */
+    protected void onInvalidated() {
+        if (parent != null) {
+            parent.onInvalidated();
+        }
+    }
+
+    /**
+     * Adds the area that needs repainting to a rectangle and marks the view
+     * as rendered. The view should be rendered right after this.
+     * @param area left, top, right and bottom edges of the rectangle, which
+     *        is empty while right <= left
+     */
+    synchronized void takeDirtyArea(int[] area) {
+        if (!needsRendering) {
+            return;
+        }
+        if (invalidated) {
+            addArea(area, paintedLeft, paintedTop, paintedRight, paintedBottom);
+            if (visible) {
+                addArea(area, left, top, right, bottom);
+            }
+        }
+        else if (visible) {
+            addArea(area, Math.max(dirtyLeft, left), Math.max(dirtyTop, top),
+                    Math.min(dirtyRight, right), Math.min(dirtyBottom, bottom));
+        }
+        if (visible) {
+            paintedLeft = left;
+            paintedTop = top;
+            paintedRight = right;
+            paintedBottom = bottom;
+        }
+        else {
+            paintedRight = paintedLeft;
+        }
+        dirtyRight = dirtyLeft;
+        invalidated = false;
+        needsRendering = false;
+    }
+
+    static void addArea(int[] area, int l, int t, int r, int b) {
+        if (r <= l || b <= t) {
+            return;
+        }
+        if (area[2] <= area[0]) {
+            area[0] = l;
+            area[1] = t;
+            area[2] = r;
+            area[3] = b;
+        }
+        else {
+            area[0] = Math.min(area[0], l);
+            area[1] = Math.min(area[1], t);
+            area[2] = Math.max(area[2], r);
+            area[3] = Math.max(area[3], b);
+        }
+    }
+
+    protected boolean intersects(int l, int t, int r, int b) {
+        return left < r && l < right && top < b && t < bottom;
     }
 
     protected boolean hits(int x, int y) {
@@ -0,0 +1,43 @@
+/**
+* Copyright (c) 2012-2014 Microsoft Mobile. All rights reserved.
+* Nokia and Nokia Connecting People are registered trademarks of Nokia Corporation. 
+* Oracle and Java are trademarks or registered trademarks of Oracle and/or its
+* affiliates. Other product and company names mentioned herein may be trademarks
+* or trade names of their respective owners. 
+* See LICENSE.TXT for license information.
+*/
+
+package com.nokia.example.sudokumaster;
+
+/**
+ * Windoku, or Hyper sudoku: the windows, extra boxes one cell in from the
+ * boxes of the board, must hold every digit once. A 9x9 board has four
+ * windows, which start at rows and columns 1 and 5.
+ */
+public class WindokuVariant
+    extends Variant {
+
+    public WindokuVariant(BoardGeometry geometry) {
+        super(geometry);
+        final int order = geometry.order;
+        final int size = geometry.size;
+        final int perSide = order - 1;
+        final short[][] windows = new short[perSide * perSide][size];
+        for (int w = 0; w < windows.length; w++) {
+            final int top = 1 + w / perSide * (order + 1);
+            final int left = 1 + w % perSide * (order + 1);
+            for (int i = 0; i < size; i++) {
+                windows[w][i] = (short) ((top + i / order) * size + left + i % order);
+            }
+        }
+        setUnits(windows);
+    }
+
+    public int getType() {
+        return WINDOKU;
+    }
+
+    public boolean isShaded(int cell) {
+        return cellUnits[cell].length > 0;
+    }
+}
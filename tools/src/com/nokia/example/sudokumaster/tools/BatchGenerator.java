@@ -0,0 +1,300 @@
+/**
+* Copyright (c) 2012-2014 Microsoft Mobile. All rights reserved.
+* Nokia and Nokia Connecting People are registered trademarks of Nokia Corporation. 
+* Oracle and Java are trademarks or registered trademarks of Oracle and/or its
+* affiliates. Other product and company names mentioned herein may be trademarks
+* or trade names of their respective owners. 
+* See LICENSE.TXT for license information.
+*/
+
+package com.nokia.example.sudokumaster.tools;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import com.nokia.example.sudokumaster.BitmaskSolver;
+import com.nokia.example.sudokumaster.DancingLinksSolver;
+import com.nokia.example.sudokumaster.DifficultyRater;
+import com.nokia.example.sudokumaster.PuzzleCodec;
+import com.nokia.example.sudokumaster.SudokuGenerator;
+
+/**
+ * Desktop command line tool for building puzzle packs. Puzzles are
+ * generated, verified with the second solver backend and rated on all
+ * cores with a fork/join pool. Every chunk of puzzles is written out as
+ * soon as it is done. Puzzles equivalent to one already written are
+ * dropped. For that a 128-bit canonical key of every puzzle is kept in a
+ * KeySet sized for the count, at most 43 bytes per puzzle, and counts
+ * whose keys would take more than half of the heap are refused.
+ *
+ * Usage: BatchGenerator count output [seed] [symmetry] [threads]
+ *
+ * If the output file name ends with ".bin", the puzzles are written as a
+ * binary corpus in the PuzzleCodec format. Otherwise each output line holds
+ * the puzzle as 81 characters, '.' for empty cells, followed by the
+ * difficulty and the score from DifficultyRater.
+ */
+public class BatchGenerator {
+
+    /** Number of puzzles generated by one leaf task. */
+    private static final int CHUNK = 256;
+    private final Output out;
+    private final long seed;
+    private final int symmetry;
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong duplicates = new AtomicLong();
+    /** Canonical keys of the puzzles written so far. */
+    private KeySet keys;
+    /** Puzzles and busy nanoseconds of every worker, by pool index. */
+    private final AtomicLongArray workerPuzzles;
+    private final AtomicLongArray workerNanos;
+    private final ThreadLocal<Worker> workers = new ThreadLocal<Worker>() {
+        protected Worker initialValue() {
+            return new Worker();
+        }
+    };
+
+    public BatchGenerator(Output out, long seed, int symmetry, int threads) {
+        this.out = out;
+        this.seed = seed;
+        this.symmetry = symmetry;
+        workerPuzzles = new AtomicLongArray(threads);
+        workerNanos = new AtomicLongArray(threads);
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println(
+                "Usage: BatchGenerator count output [seed] [symmetry] [threads]");
+            System.exit(1);
+        }
+        final long count = Long.parseLong(args[0]);
+        if (!fitsInHeap(count)) {
+            System.exit(1);
+        }
+        final long seed = args.length > 2 ? Long.parseLong(args[2])
+                : System.currentTimeMillis();
+        final int symmetry = args.length > 3 ? Integer.parseInt(args[3])
+                : SudokuGenerator.SYMMETRY_ROTATIONAL;
+        final int threads = args.length > 4 ? Integer.parseInt(args[4])
+                : Runtime.getRuntime().availableProcessors();
+        try (Output out = args[1].endsWith(".bin")
+                ? new CorpusOutput(args[1]) : new TextOutput(args[1])) {
+            new BatchGenerator(out, seed, symmetry, threads).run(count);
+        }
+    }
+
+    /**
+     * Generates the puzzles and prints the throughput to standard output.
+     * @param count number of puzzles to generate
+     */
+    public void run(long count) throws IOException {
+        keys = new KeySet(count);
+        final ForkJoinPool pool = new ForkJoinPool(workerPuzzles.length());
+        final long start = System.nanoTime();
+        pool.invoke(new Batch(0, (count + CHUNK - 1) / CHUNK, count));
+        pool.shutdown();
+        final long nanos = System.nanoTime() - start;
+        System.out.println(written.get() + " puzzles in " + nanos / 1000000
+                           + " ms, " + perSecond(written.get(), nanos)
+                           + " puzzles/s, " + rejected.get() + " rejected, "
+                           + duplicates.get() + " duplicates");
+        for (int i = 0; i < workerPuzzles.length(); i++) {
+            System.out.println("  worker " + i + ": " + workerPuzzles.get(i)
+                               + " puzzles, "
+                               + perSecond(workerPuzzles.get(i), workerNanos.get(i))
+                               + " puzzles/s");
+        }
+    }
+
+    /**
+     * Checks that the canonical keys of count puzzles fit in half of the
+     * heap, and prints an error if not.
+     */
+    static boolean fitsInHeap(long count) {
+        final long bytes = KeySet.bytesFor(count);
+        if (bytes > Runtime.getRuntime().maxMemory() / 2) {
+            System.err.println(count + " puzzles need " + (bytes >> 20)
+                               + " MB for duplicate keys; raise -Xmx or split the run");
+            return false;
+        }
+        return true;
+    }
+
+    private static long perSecond(long count, long nanos) {
+        return nanos == 0 ? 0 : count * 1000000000L / nanos;
+    }
+
+    /**
+     * Destination of the generated records. Calls come from many workers.
+     */
+    public interface Output
+        extends Closeable {
+
+        void write(byte[] records, int count) throws IOException;
+    }
+
+    private static class CorpusOutput
+        implements Output {
+
+        private final CorpusWriter writer;
+
+        CorpusOutput(String path) throws IOException {
+            writer = new CorpusWriter(path);
+        }
+
+        public synchronized void write(byte[] records, int count) throws IOException {
+            for (int i = 0; i < count; i++) {
+                writer.write(records, i * PuzzleCodec.RECORD_SIZE);
+            }
+        }
+
+        public void close() throws IOException {
+            writer.close();
+        }
+    }
+
+    private static class TextOutput
+        implements Output {
+
+        private final Writer writer;
+        private final int[][] puzzle = new int[9][9];
+
+        TextOutput(String path) throws IOException {
+            writer = new BufferedWriter(new OutputStreamWriter(
+                    new FileOutputStream(path), "US-ASCII"), 1 << 16);
+        }
+
+        public synchronized void write(byte[] records, int count) throws IOException {
+            for (int i = 0; i < count; i++) {
+                final int offset = i * PuzzleCodec.RECORD_SIZE;
+                PuzzleCodec.unpack(records, offset, puzzle);
+                for (int row = 0; row < 9; row++) {
+                    for (int col = 0; col < 9; col++) {
+                        final int n = puzzle[row][col];
+                        writer.write(n == 0 ? '.' : (char) ('0' + n));
+                    }
+                }
+                writer.write(" " + PuzzleCodec.readDifficulty(records, offset)
+                             + " " + PuzzleCodec.readScore(records, offset) + "\n");
+            }
+        }
+
+        public void close() throws IOException {
+            writer.close();
+        }
+    }
+
+    /**
+     * Mixes the chunk index into the seed with a splitmix64 step, so that
+     * runs with nearby seeds do not share chunks.
+     */
+    private long chunkSeed(long chunk) {
+        long z = seed * 0x9E3779B97F4A7C15L + chunk;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * Splits a range of chunks in halves until a single chunk is left, so
+     * idle workers can steal the other halves.
+     */
+    private class Batch
+        extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+        private final long firstChunk;
+        private final long lastChunk;
+        private final long count;
+
+        Batch(long firstChunk, long lastChunk, long count) {
+            this.firstChunk = firstChunk;
+            this.lastChunk = lastChunk;
+            this.count = count;
+        }
+
+        protected void compute() {
+            if (lastChunk - firstChunk > 1) {
+                final long middle = (firstChunk + lastChunk) >>> 1;
+                invokeAll(new Batch(firstChunk, middle, count),
+                          new Batch(middle, lastChunk, count));
+                return;
+            }
+            final int size = (int) Math.min(CHUNK, count - firstChunk * CHUNK);
+            final long start = System.nanoTime();
+            final Worker worker = workers.get();
+            final int generated = worker.generate(chunkSeed(firstChunk), size);
+            final long nanos = System.nanoTime() - start;
+            try {
+                out.write(worker.records, generated);
+            }
+            catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+            final int index = ((ForkJoinWorkerThread) Thread.currentThread())
+                    .getPoolIndex() % workerPuzzles.length();
+            workerPuzzles.addAndGet(index, generated);
+            workerNanos.addAndGet(index, nanos);
+        }
+    }
+
+    /**
+     * Solvers, rater and record buffer owned by one worker thread.
+     */
+    private class Worker {
+
+        private final BitmaskSolver solver = new BitmaskSolver();
+        private final DancingLinksSolver verifier = new DancingLinksSolver();
+        private final DifficultyRater rater = new DifficultyRater();
+        private final Canonicalizer canonicalizer = new Canonicalizer();
+        private final byte[] records = new byte[CHUNK * PuzzleCodec.RECORD_SIZE];
+        private final int[][] solution = new int[9][9];
+        private final long[] key = new long[2];
+
+        /**
+         * Generates one chunk into the record buffer. The chunk seed makes
+         * every chunk reproducible regardless of which worker runs it.
+         * @return the number of records generated
+         */
+        int generate(long chunkSeed, int size) {
+            final SudokuGenerator generator =
+                    new SudokuGenerator(new Random(chunkSeed), solver);
+            int n = 0;
+            for (int i = 0; i < size; i++) {
+                final int[][] puzzle = generator.generate(symmetry);
+                if (verifier.countSolutions(puzzle, 2) != 1) {
+                    rejected.incrementAndGet();
+                    continue;
+                }
+                canonicalizer.key(puzzle, key);
+                if (!keys.add(key)) {
+                    duplicates.incrementAndGet();
+                    continue;
+                }
+                for (int row = 0; row < 9; row++) {
+                    System.arraycopy(puzzle[row], 0, solution[row], 0, 9);
+                }
+                solver.solve(solution);
+                final int difficulty = rater.rate(puzzle);
+                PuzzleCodec.writeRecord(records, n * PuzzleCodec.RECORD_SIZE, puzzle,
+                                        difficulty, rater.getScore(),
+                                        PuzzleCodec.checksum(solution));
+                n++;
+                written.incrementAndGet();
+            }
+            return n;
+        }
+    }
+}
@@ -0,0 +1,214 @@
+/**
+* Copyright (c) 2012-2014 Microsoft Mobile. All rights reserved.
+* Nokia and Nokia Connecting People are registered trademarks of Nokia Corporation. 
+* Oracle and Java are trademarks or registered trademarks of Oracle and/or its
+* affiliates. Other product and company names mentioned herein may be trademarks
+* or trade names of their respective owners. 
+* See LICENSE.TXT for license information.
+*/
+
+package com.nokia.example.sudokumaster.tools;
+
+import java.util.Arrays;
+
+import com.nokia.example.sudokumaster.PuzzleCodec;
+
+/**
+ * Finds the canonical form of a puzzle under the Sudoku equivalence group:
+ * transposition, band and stack permutations, row and column permutations
+ * within bands and stacks, and digit relabeling. Equivalent puzzles have
+ * the same canonical form, which is the lexicographically smallest grid
+ * in row order, digits relabeled in the order they first appear.
+ *
+ * The grid is built one row at a time. Every partial transform that gives
+ * the smallest rows so far is kept and only those are extended, so the
+ * search touches a tiny part of the 3.3 billion transforms. Instances are
+ * not thread safe.
+ */
+public class Canonicalizer {
+
+    private static final int SIZE = 9;
+    /** Destination column to source column, for all 1296 column orders. */
+    private static final int[][] COLUMN_ORDERS = columnOrders();
+    private static final int USED_MASK = 0x1ff;
+    private static final int LAST_SHIFT = 9;
+    private static final int TRANSPOSED = 1 << 13;
+    private static final int NEXT_LABEL_SHIFT = 40;
+
+    private final int[][][] grids = new int[2][SIZE][SIZE];
+    private final int[] best = new int[SIZE];
+    private final int[] row = new int[SIZE];
+    /** Partial transforms: column order, rows used and last row, labels. */
+    private int[] orders = new int[2 * SIZE * 1296];
+    private int[] flags = new int[orders.length];
+    private long[] labels = new long[orders.length];
+    private int[] nextOrders = new int[orders.length];
+    private int[] nextFlags = new int[orders.length];
+    private long[] nextLabels = new long[orders.length];
+    private final int[][] canonical = new int[SIZE][SIZE];
+    private final byte[] packed = new byte[PuzzleCodec.PACKED_SIZE];
+
+    /**
+     * Calculates the canonical form of the puzzle.
+     * @param puzzle the puzzle, 0 for empty cells
+     * @param canonical destination grid, may be the puzzle itself
+     */
+    public void canonicalize(int[][] puzzle, int[][] canonical) {
+        for (int r = 0; r < SIZE; r++) {
+            for (int c = 0; c < SIZE; c++) {
+                grids[0][r][c] = puzzle[r][c];
+                grids[1][c][r] = puzzle[r][c];
+            }
+        }
+        int count = 2 * 1296;
+        for (int i = 0; i < count; i++) {
+            orders[i] = i % 1296;
+            flags[i] = i < 1296 ? 0 : TRANSPOSED;
+            labels[i] = 1L << NEXT_LABEL_SHIFT;
+        }
+        for (int r = 0; r < SIZE; r++) {
+            count = extend(r, count);
+            System.arraycopy(best, 0, canonical[r], 0, SIZE);
+        }
+    }
+
+    /**
+     * Calculates a 128-bit key of the canonical form: two independent
+     * 64-bit hashes of the packed grid. Equivalent puzzles get the same
+     * key, and the odds of two others sharing one are negligible.
+     * @param puzzle the puzzle
+     * @param key destination for the two halves of the key
+     */
+    public void key(int[][] puzzle, long[] key) {
+        canonicalize(puzzle, canonical);
+        PuzzleCodec.pack(canonical, packed, 0);
+        long high = 0xcbf29ce484222325L;
+        long low = 0x9e3779b97f4a7c15L;
+        for (int i = 0; i < packed.length; i++) {
+            final int b = packed[i] & 0xff;
+            high = (high ^ b) * 0x100000001b3L;
+            low = (low + b) * 0xd6e8feb86659fd93L;
+            low ^= low >>> 32;
+        }
+        key[0] = mix(high);
+        key[1] = mix(low);
+    }
+
+    /**
+     * Finalizer of splitmix64, which spreads every input bit over the
+     * whole result.
+     */
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * Extends every kept transform with each row allowed at position r and
+     * keeps the ones that give the smallest row.
+     * @return the number of transforms kept
+     */
+    private int extend(int r, int count) {
+        int kept = 0;
+        boolean first = true;
+        for (int i = 0; i < count; i++) {
+            final int used = flags[i] & USED_MASK;
+            final int last = (flags[i] >> LAST_SHIFT) & 0xf;
+            final int[][] grid = grids[(flags[i] & TRANSPOSED) == 0 ? 0 : 1];
+            final int[] order = COLUMN_ORDERS[orders[i]];
+            for (int source = 0; source < SIZE; source++) {
+                if ((used & 1 << source) != 0
+                        || (r % 3 == 0 ? (used >> (source / 3 * 3) & 7) != 0
+                                       : source / 3 != last / 3)) {
+                    continue;
+                }
+                long map = labels[i];
+                int cmp = first ? -1 : 0;
+                for (int c = 0; c < SIZE; c++) {
+                    final int value = grid[source][order[c]];
+                    int label = 0;
+                    if (value != 0) {
+                        label = (int) (map >> (4 * value)) & 0xf;
+                        if (label == 0) {
+                            label = (int) (map >> NEXT_LABEL_SHIFT) & 0xf;
+                            map += (long) label << (4 * value);
+                            map += 1L << NEXT_LABEL_SHIFT;
+                        }
+                    }
+                    if (cmp == 0) {
+                        if (label > best[c]) {
+                            cmp = 1;
+                            break;
+                        }
+                        if (label < best[c]) {
+                            cmp = -1;
+                        }
+                    }
+                    row[c] = label;
+                }
+                if (cmp > 0) {
+                    continue;
+                }
+                if (cmp < 0) {
+                    System.arraycopy(row, 0, best, 0, SIZE);
+                    kept = 0;
+                    first = false;
+                }
+                if (kept == nextOrders.length) {
+                    grow();
+                }
+                nextOrders[kept] = orders[i];
+                nextFlags[kept] = (flags[i] & TRANSPOSED) | used | 1 << source
+                                  | source << LAST_SHIFT;
+                nextLabels[kept] = map;
+                kept++;
+            }
+        }
+        int[] swap = orders;
+        orders = nextOrders;
+        nextOrders = swap;
+        swap = flags;
+        flags = nextFlags;
+        nextFlags = swap;
+        final long[] swapLabels = labels;
+        labels = nextLabels;
+        nextLabels = swapLabels;
+        return kept;
+    }
+
+    private void grow() {
+        final int length = nextOrders.length * 2;
+        nextOrders = Arrays.copyOf(nextOrders, length);
+        nextFlags = Arrays.copyOf(nextFlags, length);
+        nextLabels = Arrays.copyOf(nextLabels, length);
+        orders = Arrays.copyOf(orders, length);
+        flags = Arrays.copyOf(flags, length);
+        labels = Arrays.copyOf(labels, length);
+    }
+
+    private static int[][] columnOrders() {
+        final int[][] perms = {
+            {0, 1, 2}, {0, 2, 1}, {1, 0, 2}, {1, 2, 0}, {2, 0, 1}, {2, 1, 0}
+        };
+        final int[][] orders = new int[1296][SIZE];
+        int n = 0;
+        for (int stacks = 0; stacks < 6; stacks++) {
+            for (int a = 0; a < 6; a++) {
+                for (int b = 0; b < 6; b++) {
+                    for (int c = 0; c < 6; c++) {
+                        final int[] within = {a, b, c};
+                        for (int s = 0; s < 3; s++) {
+                            for (int k = 0; k < 3; k++) {
+                                orders[n][3 * s + k] = 3 * perms[stacks][s]
+                                                       + perms[within[s]][k];
+                            }
+                        }
+                        n++;
+                    }
+                }
+            }
+        }
+        return orders;
+    }
+}
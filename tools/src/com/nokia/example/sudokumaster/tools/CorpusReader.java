@@ -0,0 +1,101 @@
+/**
+* Copyright (c) 2012-2014 Microsoft Mobile. All rights reserved.
+* Nokia and Nokia Connecting People are registered trademarks of Nokia Corporation. 
+* Oracle and Java are trademarks or registered trademarks of Oracle and/or its
+* affiliates. Other product and company names mentioned herein may be trademarks
+* or trade names of their respective owners. 
+* See LICENSE.TXT for license information.
+*/
+
+package com.nokia.example.sudokumaster.tools;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+import com.nokia.example.sudokumaster.PuzzleCodec;
+
+/**
+ * Random access to a puzzle corpus in the PuzzleCodec format. The file is
+ * memory mapped, so reading puzzles costs no heap beyond the caller's
+ * buffers. A single mapping is limited to 2 GB, so large files are mapped
+ * in segments that each hold a whole number of records.
+ */
+public class CorpusReader
+    implements Closeable {
+
+    private static final long SEGMENT_RECORDS = (1L << 30) / PuzzleCodec.RECORD_SIZE;
+    private final RandomAccessFile file;
+    private final MappedByteBuffer[] segments;
+    private final long count;
+    private final byte[] record = new byte[PuzzleCodec.RECORD_SIZE];
+
+    public CorpusReader(String path) throws IOException {
+        file = new RandomAccessFile(path, "r");
+        final FileChannel channel = file.getChannel();
+        final MappedByteBuffer header =
+                channel.map(FileChannel.MapMode.READ_ONLY, 0, PuzzleCodec.HEADER_SIZE);
+        if (header.getInt() != PuzzleCodec.MAGIC
+                || header.getShort() != PuzzleCodec.VERSION
+                || header.getShort() != PuzzleCodec.RECORD_SIZE) {
+            file.close();
+            throw new IOException(path + " is not a puzzle corpus");
+        }
+        count = Math.min(header.getLong(), (channel.size() - PuzzleCodec.HEADER_SIZE)
+                                           / PuzzleCodec.RECORD_SIZE);
+        segments = new MappedByteBuffer[(int) ((count + SEGMENT_RECORDS - 1) / SEGMENT_RECORDS)];
+        for (int i = 0; i < segments.length; i++) {
+            final long first = i * SEGMENT_RECORDS;
+            final long records = Math.min(SEGMENT_RECORDS, count - first);
+            segments[i] = channel.map(FileChannel.MapMode.READ_ONLY,
+                                      PuzzleCodec.HEADER_SIZE + first * PuzzleCodec.RECORD_SIZE,
+                                      records * PuzzleCodec.RECORD_SIZE);
+        }
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Copies the raw record of puzzle n.
+     * @param n puzzle number
+     * @param out destination array
+     * @param offset index of the first byte to write
+     */
+    public void readRecord(long n, byte[] out, int offset) {
+        if (n < 0 || n >= count) {
+            throw new IndexOutOfBoundsException("Puzzle " + n + " of " + count);
+        }
+        final MappedByteBuffer segment = segments[(int) (n / SEGMENT_RECORDS)];
+        final int position = (int) (n % SEGMENT_RECORDS) * PuzzleCodec.RECORD_SIZE;
+        for (int i = 0; i < PuzzleCodec.RECORD_SIZE; i++) {
+            out[offset + i] = segment.get(position + i);
+        }
+    }
+
+    /**
+     * Reads puzzle n into the grid.
+     * @return the difficulty of the puzzle
+     */
+    public int read(long n, int[][] puzzle) {
+        readRecord(n, record, 0);
+        PuzzleCodec.unpack(record, 0, puzzle);
+        return PuzzleCodec.readDifficulty(record, 0);
+    }
+
+    /**
+     * Reads only the difficulty byte of puzzle n, for fast scans.
+     */
+    public int readDifficulty(long n) {
+        final MappedByteBuffer segment = segments[(int) (n / SEGMENT_RECORDS)];
+        return segment.get((int) (n % SEGMENT_RECORDS) * PuzzleCodec.RECORD_SIZE
+                           + PuzzleCodec.DIFFICULTY_OFFSET);
+    }
+
+    public void close() throws IOException {
+        file.close();
+    }
+}
@@ -0,0 +1,190 @@
+/**
+* Copyright (c) 2012-2014 Microsoft Mobile. All rights reserved.
+* Nokia and Nokia Connecting People are registered trademarks of Nokia Corporation. 
+* Oracle and Java are trademarks or registered trademarks of Oracle and/or its
+* affiliates. Other product and company names mentioned herein may be trademarks
+* or trade names of their respective owners. 
+* See LICENSE.TXT for license information.
+*/
+
+package com.nokia.example.sudokumaster.tools;
+
+import java.io.IOException;
+import java.util.Random;
+
+import com.nokia.example.sudokumaster.BitmaskSolver;
+import com.nokia.example.sudokumaster.DifficultyRater;
+import com.nokia.example.sudokumaster.PuzzleCodec;
+
+/**
+ * Desktop command line tool for puzzle corpora written by BatchGenerator.
+ *
+ * Usage:
+ *   CorpusTool info corpus
+ *   CorpusTool get corpus n
+ *   CorpusTool sample corpus count [seed]
+ *   CorpusTool verify corpus
+ *   CorpusTool export corpus pack perDifficulty [seed]
+ *   CorpusTool dedup corpus output
+ *
+ * The export command picks random puzzles of every difficulty into a pack
+ * that the game bundles as /puzzles.bin. The dedup command copies the
+ * corpus without puzzles that are equivalent to an earlier one. It keeps
+ * a 128-bit key per puzzle, at most 43 bytes each, and refuses corpora
+ * whose keys would take more than half of the heap.
+ */
+public class CorpusTool {
+
+    private static final int DIFFICULTIES = DifficultyRater.DIFFICULTY_EXPERT + 1;
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            usage();
+        }
+        try (CorpusReader reader = new CorpusReader(args[1])) {
+            if (args[0].equals("info")) {
+                info(reader);
+            }
+            else if (args[0].equals("get") && args.length > 2) {
+                print(reader, Long.parseLong(args[2]));
+            }
+            else if (args[0].equals("sample") && args.length > 2) {
+                final Random random = random(args, 3);
+                final long count = Long.parseLong(args[2]);
+                for (long i = 0; i < count && reader.getCount() > 0; i++) {
+                    print(reader, (random.nextLong() >>> 1) % reader.getCount());
+                }
+            }
+            else if (args[0].equals("verify")) {
+                verify(reader);
+            }
+            else if (args[0].equals("export") && args.length > 3) {
+                export(reader, args[2], Integer.parseInt(args[3]), random(args, 4));
+            }
+            else if (args[0].equals("dedup") && args.length > 2) {
+                dedup(reader, args[2]);
+            }
+            else {
+                usage();
+            }
+        }
+    }
+
+    private static void usage() {
+        System.err.println(
+            "Usage: CorpusTool info|get|sample|verify|export|dedup corpus ...");
+        System.exit(1);
+    }
+
+    private static Random random(String[] args, int index) {
+        return args.length > index ? new Random(Long.parseLong(args[index])) : new Random();
+    }
+
+    private static void info(CorpusReader reader) {
+        final long[] counts = new long[DIFFICULTIES + 1];
+        for (long n = 0; n < reader.getCount(); n++) {
+            final int difficulty = reader.readDifficulty(n);
+            counts[difficulty >= 0 && difficulty < DIFFICULTIES ? difficulty : DIFFICULTIES]++;
+        }
+        System.out.println(reader.getCount() + " puzzles");
+        for (int d = 0; d < DIFFICULTIES; d++) {
+            System.out.println("  difficulty " + d + ": " + counts[d]);
+        }
+        System.out.println("  unknown: " + counts[DIFFICULTIES]);
+    }
+
+    private static void print(CorpusReader reader, long n) {
+        final int[][] puzzle = new int[9][9];
+        final int difficulty = reader.read(n, puzzle);
+        final StringBuilder line = new StringBuilder(96);
+        for (int row = 0; row < 9; row++) {
+            for (int col = 0; col < 9; col++) {
+                line.append(puzzle[row][col] == 0 ? '.' : (char) ('0' + puzzle[row][col]));
+            }
+        }
+        System.out.println(line.append(' ').append(n).append(' ').append(difficulty));
+    }
+
+    /**
+     * Solves every puzzle and compares the solution with the stored
+     * checksum.
+     */
+    private static void verify(CorpusReader reader) {
+        final BitmaskSolver solver = new BitmaskSolver();
+        final byte[] record = new byte[PuzzleCodec.RECORD_SIZE];
+        final int[][] grid = new int[9][9];
+        long failed = 0;
+        for (long n = 0; n < reader.getCount(); n++) {
+            reader.readRecord(n, record, 0);
+            PuzzleCodec.unpack(record, 0, grid);
+            if (!solver.solve(grid)
+                    || PuzzleCodec.checksum(grid) != PuzzleCodec.readChecksum(record, 0)) {
+                System.out.println("Puzzle " + n + " does not match its checksum");
+                failed++;
+            }
+        }
+        System.out.println(reader.getCount() + " puzzles, " + failed + " failed");
+    }
+
+    /**
+     * Writes up to perDifficulty random puzzles of every difficulty into a
+     * new pack. Records are copied as they are, without unpacking.
+     */
+    private static void export(CorpusReader reader, String path, int perDifficulty,
+                               Random random) throws IOException {
+        final long count = reader.getCount();
+        final long[][] picked = new long[DIFFICULTIES][perDifficulty];
+        final long[] matches = new long[DIFFICULTIES];
+        for (long n = 0; n < count; n++) {
+            final int difficulty = reader.readDifficulty(n);
+            if (difficulty < 0 || difficulty >= DIFFICULTIES) {
+                continue;
+            }
+            // Reservoir sampling keeps every match with equal odds.
+            final long seen = matches[difficulty]++;
+            if (seen < perDifficulty) {
+                picked[difficulty][(int) seen] = n;
+            }
+            else {
+                final long slot = (random.nextLong() >>> 1) % (seen + 1);
+                if (slot < perDifficulty) {
+                    picked[difficulty][(int) slot] = n;
+                }
+            }
+        }
+        final byte[] record = new byte[PuzzleCodec.RECORD_SIZE];
+        try (CorpusWriter writer = new CorpusWriter(path)) {
+            for (int d = 0; d < DIFFICULTIES; d++) {
+                final int size = (int) Math.min(perDifficulty, matches[d]);
+                for (int i = 0; i < size; i++) {
+                    reader.readRecord(picked[d][i], record, 0);
+                    writer.write(record, 0);
+                }
+            }
+            System.out.println(writer.getCount() + " puzzles exported to " + path);
+        }
+    }
+
+    private static void dedup(CorpusReader reader, String path) throws IOException {
+        if (!BatchGenerator.fitsInHeap(reader.getCount())) {
+            System.exit(1);
+        }
+        final Canonicalizer canonicalizer = new Canonicalizer();
+        final KeySet keys = new KeySet(reader.getCount());
+        final long[] key = new long[2];
+        final byte[] record = new byte[PuzzleCodec.RECORD_SIZE];
+        final int[][] puzzle = new int[9][9];
+        try (CorpusWriter writer = new CorpusWriter(path)) {
+            for (long n = 0; n < reader.getCount(); n++) {
+                reader.readRecord(n, record, 0);
+                PuzzleCodec.unpack(record, 0, puzzle);
+                canonicalizer.key(puzzle, key);
+                if (keys.add(key)) {
+                    writer.write(record, 0);
+                }
+            }
+            System.out.println(writer.getCount() + " of " + reader.getCount()
+                               + " puzzles written to " + path);
+        }
+    }
+}
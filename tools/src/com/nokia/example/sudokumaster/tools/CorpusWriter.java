@@ -0,0 +1,96 @@
+/**
+* Copyright (c) 2012-2014 Microsoft Mobile. All rights reserved.
+* Nokia and Nokia Connecting People are registered trademarks of Nokia Corporation. 
+* Oracle and Java are trademarks or registered trademarks of Oracle and/or its
+* affiliates. Other product and company names mentioned herein may be trademarks
+* or trade names of their respective owners. 
+* See LICENSE.TXT for license information.
+*/
+
+package com.nokia.example.sudokumaster.tools;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+import com.nokia.example.sudokumaster.PuzzleCodec;
+
+/**
+ * Writes a puzzle corpus in the PuzzleCodec format. Records are appended
+ * through a buffer and the record count in the header is filled in when
+ * the writer is closed.
+ */
+public class CorpusWriter
+    implements Closeable {
+
+    private static final int BUFFER_RECORDS = 4096;
+    private final RandomAccessFile file;
+    private final FileChannel channel;
+    private final ByteBuffer buffer =
+            ByteBuffer.allocateDirect(BUFFER_RECORDS * PuzzleCodec.RECORD_SIZE);
+    private final byte[] record = new byte[PuzzleCodec.RECORD_SIZE];
+    private long count = 0;
+
+    public CorpusWriter(String path) throws IOException {
+        file = new RandomAccessFile(path, "rw");
+        file.setLength(0);
+        channel = file.getChannel();
+        writeHeader();
+        channel.position(PuzzleCodec.HEADER_SIZE);
+    }
+
+    /**
+     * Appends a puzzle.
+     * @param puzzle the puzzle
+     * @param difficulty one of the DifficultyRater.DIFFICULTY_ constants
+     * @param score score from DifficultyRater
+     * @param checksum checksum of the solution from PuzzleCodec.checksum()
+     */
+    public synchronized void write(int[][] puzzle, int difficulty, int score,
+                                   int checksum) throws IOException {
+        PuzzleCodec.writeRecord(record, 0, puzzle, difficulty, score, checksum);
+        write(record, 0);
+    }
+
+    /**
+     * Appends a record that is already encoded.
+     */
+    public synchronized void write(byte[] records, int offset) throws IOException {
+        if (!buffer.hasRemaining()) {
+            flush();
+        }
+        buffer.put(records, offset, PuzzleCodec.RECORD_SIZE);
+        count++;
+    }
+
+    public synchronized long getCount() {
+        return count;
+    }
+
+    private void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    private void writeHeader() throws IOException {
+        final ByteBuffer header = ByteBuffer.allocate(PuzzleCodec.HEADER_SIZE);
+        header.putInt(PuzzleCodec.MAGIC);
+        header.putShort((short) PuzzleCodec.VERSION);
+        header.putShort((short) PuzzleCodec.RECORD_SIZE);
+        header.putLong(count);
+        header.flip();
+        channel.write(header, 0);
+    }
+
+    public synchronized void close() throws IOException {
+        flush();
+        writeHeader();
+        channel.close();
+        file.close();
+    }
+}
@@ -0,0 +1,90 @@
+/**
+* Copyright (c) 2012-2014 Microsoft Mobile. All rights reserved.
+* Nokia and Nokia Connecting People are registered trademarks of Nokia Corporation. 
+* Oracle and Java are trademarks or registered trademarks of Oracle and/or its
+* affiliates. Other product and company names mentioned herein may be trademarks
+* or trade names of their respective owners. 
+* See LICENSE.TXT for license information.
+*/
+
+package com.nokia.example.sudokumaster.tools;
+
+/**
+ * Set of 128-bit keys, such as the canonical keys of puzzles, in an open
+ * addressing table of longs. A key takes 16 bytes and the table is at
+ * most three quarters full, so the set costs at most 22 bytes per key
+ * plus rounding up to a power of two, about 43 bytes per key at worst.
+ * The table is allocated for the expected number of keys up front and
+ * never grows, so check bytesFor() against the heap before creating a
+ * large one. Adding is synchronized, which costs little next to the
+ * work of finding a canonical key.
+ */
+public class KeySet {
+
+    private final long[] table;
+    private final int mask;
+    private long size = 0;
+    private final long capacity;
+
+    /**
+     * @param expected the most keys that will be added
+     */
+    public KeySet(long expected) {
+        final long slots = slotsFor(expected);
+        if (2 * slots > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException("Too many keys: " + expected);
+        }
+        table = new long[(int) (2 * slots)];
+        mask = (int) slots - 1;
+        capacity = expected;
+    }
+
+    private static long slotsFor(long expected) {
+        long slots = 16;
+        while (slots * 3 / 4 < expected) {
+            slots <<= 1;
+        }
+        return slots;
+    }
+
+    /**
+     * @return the bytes a set for the expected number of keys takes
+     */
+    public static long bytesFor(long expected) {
+        return 16 * slotsFor(expected);
+    }
+
+    /**
+     * Adds a key unless it is in the set already.
+     * @param key the two halves of the key
+     * @return true if the key was added
+     */
+    public synchronized boolean add(long[] key) {
+        final long high = key[0];
+        // All-zero slots are empty, so a zero key is stored as 1.
+        final long low = high == 0 && key[1] == 0 ? 1 : key[1];
+        int slot = (int) (low ^ low >>> 32) & mask;
+        while (true) {
+            final long h = table[2 * slot];
+            final long l = table[2 * slot + 1];
+            if (h == 0 && l == 0) {
+                break;
+            }
+            if (h == high && l == low) {
+                return false;
+            }
+            slot = (slot + 1) & mask;
+        }
+        if (size >= capacity) {
+            throw new IllegalStateException("More keys than expected: " + capacity);
+        }
+        table[2 * slot] = high;
+        table[2 * slot + 1] = low;
+        size++;
+        return true;
+    }
+
+    public synchronized long size() {
+        return size;
+    }
+}